@@ -52,6 +52,10 @@
                          Fixed bug when deleting empty properties files
                          Fixed bug with getSchema() when B2 running from cache directory
                          Added code to migrate old group settings files
+      1.9.01  16-Oct-26  Settings files are cached between instances and only re-read when changed
+                         Settings files are saved atomically via a temporary file with per-file locking
+                         Plugin vendor ID, handle, path, schema and root are only derived once per class loader
+                         Added getBbVersion method; the Learn version number is now only parsed once
  */
 package com.spvsoftwareproducts.blackboard.utils;
 
@@ -66,8 +70,6 @@ import java.util.Enumeration;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.FileNotFoundException;
 import java.io.UnsupportedEncodingException;
@@ -189,8 +191,6 @@ public class B2Context {
 
   private static final int MAX_VALUE_LENGTH = 255;
   private static final String SETTINGS_FILE_EXTENSION = ".properties";
-  private static final int[] V90_RELEASE = {351, 440, 505, 539, 572, 613, 670, 692};
-  private static final int[] V91_RELEASE = {407, 452, 482};
   private static final String LOG_LEVEL_SETTING = "loglevel";
   private static final String LOG_LEVEL_DEBUG_SETTING = "debug";
   private static final String GROUPS_SETTING = "groups";
@@ -203,6 +203,8 @@ public class B2Context {
   private static volatile Log log = null;
   private static volatile boolean logDebug = false;
   private static volatile String logPrefix = null;
+  private static volatile PlugInEnvironment plugInEnvironment = null;
+  private static volatile BbVersion bbVersion = null;
   private Context context = null;
   private User user = null;
   private Course course = null;
@@ -222,6 +224,7 @@ public class B2Context {
   private final Properties[][] settings = new Properties[2][2];
   private final Map<Id, Properties> nodeSettings = new HashMap<Id, Properties>();
   private final Map<String, Properties> userSettings = new HashMap<String, Properties>();
+  private final Map<String, Properties> fileSettings = new HashMap<String, Properties>();
   private boolean inheritSettings = false;
   private List<Node> activeNodes = null;
   private HttpServletRequest request = null;
@@ -321,30 +324,35 @@ public class B2Context {
       String name = this.getClass().getName();
       className = name.substring(name.lastIndexOf(".") + 1);
     }
-    String location = this.getClass().getClassLoader().getResource(this.getClass().getName().replace('.', '/') + ".class").toString();
-    int pos = location.indexOf("/plugins/");
-    if (pos >= 0) {
-      location = location.substring(pos + 9);
-      location = location.substring(0, location.indexOf('/'));
-      String[] plugInElements = location.split("-", 2);
-      this.vendorId = plugInElements[0];
-      this.handle = plugInElements[1];
-      this.path = PlugInUtil.getUri(this.vendorId, this.handle, "");
-      pos = this.path.indexOf(location);
-      this.schema = this.path.substring(pos + location.length() + 1);
-      this.schema = this.schema.substring(0, this.schema.indexOf('/'));
-      PlugInConfig config;
-      try {
-        config = new PlugInConfig(this.vendorId, this.handle);
-        File configFile = config.getConfigDirectory();
-        this.root = configFile.getPath();
-        this.root = this.root.substring(0, this.root.lastIndexOf(File.separatorChar) + 1) + "webapp" + File.separator;
-      } catch (PlugInException e) {
-        this.root = null;
+    PlugInEnvironment environment = getPlugInEnvironment();
+    this.vendorId = environment.vendorId;
+    this.handle = environment.handle;
+    this.path = environment.path;
+    this.schema = environment.schema;
+    this.root = environment.root;
+
+    initNode();
+
+  }
+
+// ---------------------------------------------------
+// Function to get the plugin environment, which is only derived once for the class loader
+  private PlugInEnvironment getPlugInEnvironment() {
+
+    PlugInEnvironment environment = plugInEnvironment;
+    if (environment == null) {
+      synchronized (B2Context.class) {
+        environment = plugInEnvironment;
+        if (environment == null) {
+          environment = new PlugInEnvironment(this.getClass());
+          if (environment.isComplete()) {
+            plugInEnvironment = environment;
+          }
+        }
       }
     }
 
-    initNode();
+    return environment;
 
   }
 
@@ -1621,29 +1629,26 @@ public class B2Context {
 
   private Properties loadFileSettings(boolean global, String suffix, Node aNode) {
 
-    Properties props = new Properties();
+    Properties props = null;
     File configFile = getConfigFile(global, suffix, aNode);
     if ((configFile != null) && configFile.exists()) {
-      FileInputStream fiStream = null;
       try {
-        fiStream = new FileInputStream(configFile);
-        props.load(fiStream);
+        props = SettingsFileCache.load(configFile);
       } catch (FileNotFoundException e) {
-        props.clear();
+        props = null;
       } catch (IOException e) {
         log(true, "Error in B2Context.loadFileSettings:", e);
-        props.clear();
-      } finally {
-        if (fiStream != null) {
-          try {
-            fiStream.close();
-          } catch (IOException e) {
-            log(true, "Error in B2Context.loadFileSettings:", e);
-            props.clear();
-          }
-        }
+        props = null;
       }
     }
+    if (props == null) {
+      props = new Properties();
+    }
+    if (configFile != null) {
+      Properties loaded = new Properties();
+      loaded.putAll(props);
+      this.fileSettings.put(configFile.getAbsolutePath(), loaded);
+    }
     if (global && (aNode != null) && ((suffix == null) || (suffix.length() <= 0))) {
       this.nodeSettings.put(aNode.getNodeId(), props);
     }
@@ -2408,14 +2413,6 @@ public class B2Context {
   private void saveFileSettings(boolean global, String suffix, Properties props, Node aNode) {
 
     File configFile = getConfigFile(global, suffix, aNode);
-// Delete file if no settings
-    if ((configFile != null) && props.isEmpty()) {
-      if (!configFile.exists()) {
-        configFile = null;
-      } else if (configFile.delete()) {
-        configFile = null;
-      }
-    }
     if (configFile != null) {
       StringBuilder description = new StringBuilder();
       if (global) {
@@ -2424,22 +2421,28 @@ public class B2Context {
         description = description.append("Context");
       }
       description = description.append(" configuration settings");
-      FileOutputStream foStream = null;
+      String key = configFile.getAbsolutePath();
+      Properties loaded = this.fileSettings.get(key);
       try {
-        foStream = new FileOutputStream(configFile);
-        props.store(foStream, description.toString());
+// Only apply the changes made since the file was loaded so that settings saved by others are not lost
+        if (loaded != null) {
+          Properties saved = SettingsFileCache.update(configFile, loaded, props, description.toString());
+          props.clear();
+          props.putAll(saved);
+        } else if (props.isEmpty()) {
+          if (configFile.exists()) {
+            SettingsFileCache.delete(configFile);
+          }
+        } else {
+          SettingsFileCache.store(configFile, props, description.toString());
+        }
+        loaded = new Properties();
+        loaded.putAll(props);
+        this.fileSettings.put(key, loaded);
       } catch (FileNotFoundException e) {
         log(true, "Error in B2Context.saveFileSettings:", e);
       } catch (IOException e) {
         log(true, "Error in B2Context.saveFileSettings:", e);
-      } finally {
-        if (foStream != null) {
-          try {
-            foStream.close();
-          } catch (IOException e) {
-            log(true, "Error in B2Context.saveFileSettings:", e);
-          }
-        }
       }
     }
   }
@@ -2837,6 +2840,8 @@ public class B2Context {
         if (sourceGroupFile.exists()) {
           destinationGroupFile = new File(configFile, filename + destId.toExternalString() + SETTINGS_FILE_EXTENSION);
           if (sourceGroupFile.renameTo(destinationGroupFile)) {
+            SettingsFileCache.remove(sourceGroupFile);
+            SettingsFileCache.remove(destinationGroupFile);
             n++;
           } else {
             copyControl.getLogger().logError("Unable to rename properties file for group " + group.getId().toExternalString());
@@ -2914,6 +2919,8 @@ public class B2Context {
         if (sourceGroupFile.exists()) {
           destinationGroupFile = new File(configFile, filename + destId.toExternalString() + SETTINGS_FILE_EXTENSION);
           if (sourceGroupFile.renameTo(destinationGroupFile)) {
+            SettingsFileCache.remove(sourceGroupFile);
+            SettingsFileCache.remove(destinationGroupFile);
             n++;
           } else {
             importControl.getLogger().logError("Unable to rename properties file for group " + groupId);
@@ -2952,42 +2959,26 @@ public class B2Context {
    */
   public static int[] getVersionNumber() {
 
-    int[] iVersion = new int[4];
-
-    String version = getVersionNumber("0.0.00000");
-    String[] sVersion = version.split("\\.");
-    if (sVersion.length < 3) {
-      sVersion = "0.0.00000".split("\\.");
-    }
-
-    iVersion[0] = stringToInt(sVersion[0], 0);
-    iVersion[1] = stringToInt(sVersion[1], 0);
-    iVersion[2] = stringToInt(sVersion[2], 0);
-    iVersion[3] = stringToInt(sVersion[3], 0);
-
-    if ((sVersion[2].length() == 6) && (sVersion[2].startsWith("20"))) {
-      iVersion[2] = stringToInt(sVersion[2], 0);
-      iVersion[3] = stringToInt(sVersion[3], 0);
-    } else if (sVersion[2].length() > 4) {
-      iVersion[2] = stringToInt(sVersion[2].substring(0, sVersion[2].length() - 4), 0);
-      iVersion[3] = stringToInt(sVersion[2].substring(sVersion[2].length() - 4), 0);
-    } else if ((iVersion[0] == 9) && (iVersion[1] == 0)) {
-      for (int i = 0; i < V90_RELEASE.length; i++) {
-        if (iVersion[2] <= V90_RELEASE[i]) {
-          iVersion[2] = i;
-          break;
-        }
-      }
-    } else if ((iVersion[0] == 9) && (iVersion[1] == 1)) {
-      for (int i = 0; i < V91_RELEASE.length; i++) {
-        if (iVersion[2] <= V91_RELEASE[i]) {
-          iVersion[2] = i;
-          break;
-        }
-      }
+    return getBbVersion().toArray();
+
+  }
+
+  /**
+   * Gets the parsed Blackboard version number.
+   * <p>
+   * The version number is only read and parsed once; the Learn version cannot change without a restart.
+   *
+   * @return               the Blackboard version
+   */
+  public static BbVersion getBbVersion() {
+
+    BbVersion version = bbVersion;
+    if (version == null) {
+      version = BbVersion.parse(getVersionNumber("0.0.00000"));
+      bbVersion = version;
     }
 
-    return iVersion;
+    return version;
 
   }
 
@@ -3005,20 +2996,7 @@ public class B2Context {
    */
   public static boolean getIsVersion(int major, int minor, int servicePack) {
 
-    boolean ok = false;
-
-    int[] version = getVersionNumber();
-    if (version[0] > major) {
-      ok = true;
-    } else if (version[0] == major) {
-      if (version[1] > minor) {
-        ok = true;
-      } else if (version[1] == minor) {
-        ok = version[2] >= servicePack;
-      }
-    }
-
-    return ok;
+    return getBbVersion().atLeast(major, minor, servicePack);
 
   }
 
@@ -3133,4 +3111,52 @@ public class B2Context {
 
   }
 
+  /**
+   * PlugInEnvironment holds the details of the Building Block which are derived
+   * from the location of the class file; these do not change for the life of the
+   * class loader.
+   */
+  private static final class PlugInEnvironment {
+
+    private String vendorId = null;
+    private String handle = null;
+    private String path = null;
+    private String schema = null;
+    private String root = null;
+
+    private PlugInEnvironment(Class<?> aClass) {
+
+      String location = aClass.getClassLoader().getResource(aClass.getName().replace('.', '/') + ".class").toString();
+      int pos = location.indexOf("/plugins/");
+      if (pos >= 0) {
+        location = location.substring(pos + 9);
+        location = location.substring(0, location.indexOf('/'));
+        String[] plugInElements = location.split("-", 2);
+        this.vendorId = plugInElements[0];
+        this.handle = plugInElements[1];
+        this.path = PlugInUtil.getUri(this.vendorId, this.handle, "");
+        pos = this.path.indexOf(location);
+        this.schema = this.path.substring(pos + location.length() + 1);
+        this.schema = this.schema.substring(0, this.schema.indexOf('/'));
+        PlugInConfig config;
+        try {
+          config = new PlugInConfig(this.vendorId, this.handle);
+          File configFile = config.getConfigDirectory();
+          this.root = configFile.getPath();
+          this.root = this.root.substring(0, this.root.lastIndexOf(File.separatorChar) + 1) + "webapp" + File.separator;
+        } catch (PlugInException e) {
+          this.root = null;
+        }
+      }
+
+    }
+
+    private boolean isComplete() {
+
+      return (this.vendorId != null) && (this.root != null);
+
+    }
+
+  }
+
 }
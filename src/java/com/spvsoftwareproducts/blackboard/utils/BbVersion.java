@@ -0,0 +1,246 @@
+/*
+    BbVersion - Class representing a parsed Blackboard Learn version number
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package com.spvsoftwareproducts.blackboard.utils;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BbVersion is an immutable representation of a Blackboard Learn version number
+ * split into its major, minor, service pack and build elements.
+ * <p>
+ * The following version number formats are recognised:
+ * <ul>
+ *   <li>9.0 and early 9.1 releases (e.g. 9.0.692.0) where the service pack is derived from the build number
+ *   <li>9.1 service packs (e.g. 9.1.110082.0) where the service pack precedes the last four digits of the third element
+ *   <li>releases from April 2014 (e.g. 9.1.201404.160205) where the third element is used unchanged
+ *   <li>3x00 cumulative updates (e.g. 3300.0.1-rel.30+1a2b3c4) where the service pack is the update number
+ *       preceding <code>-rel</code> and the build is the number following it
+ * </ul>
+ *
+ * @version     1.0
+ */
+public final class BbVersion {
+
+  private static final String DEFAULT_VERSION = "0.0.00000";
+  private static final int[] V90_RELEASE = {351, 440, 505, 539, 572, 613, 670, 692};
+  private static final int[] V91_RELEASE = {407, 452, 482};
+  private static final Pattern UPDATE_PATTERN = Pattern.compile("([0-9]+)-rel");
+  private static final Pattern BUILD_PATTERN = Pattern.compile("([0-9]+).*");
+
+  private final int major;
+  private final int minor;
+  private final int servicePack;
+  private final int build;
+
+  private BbVersion(int major, int minor, int servicePack, int build) {
+
+    this.major = major;
+    this.minor = minor;
+    this.servicePack = servicePack;
+    this.build = build;
+
+  }
+
+  /**
+   * Parses a Blackboard version number.
+   *
+   * @param  version   version number string (e.g. 9.1.90132)
+   * @return           the parsed version (0.0.0.0 if the string is not a valid version number)
+   */
+  public static BbVersion parse(String version) {
+
+    String[] sVersion = null;
+    if (version != null) {
+      sVersion = version.split("\\.");
+    }
+    if ((sVersion == null) || (sVersion.length < 3)) {
+      sVersion = DEFAULT_VERSION.split("\\.");
+    }
+
+    int iMajor = stringToInt(sVersion[0]);
+    int iMinor = stringToInt(sVersion[1]);
+    int iServicePack = stringToInt(sVersion[2]);
+    int iBuild = 0;
+    if (sVersion.length > 3) {
+      iBuild = stringToInt(sVersion[3]);
+    }
+
+    Matcher update = UPDATE_PATTERN.matcher(sVersion[2]);
+    boolean isDated = (sVersion[2].length() == 6) && (sVersion[2].startsWith("20"));
+    if (update.matches()) {
+      iServicePack = stringToInt(update.group(1));
+      iBuild = 0;
+      if (sVersion.length > 3) {
+        Matcher build = BUILD_PATTERN.matcher(sVersion[3]);
+        if (build.matches()) {
+          iBuild = stringToInt(build.group(1));
+        }
+      }
+    } else if (isDated) {
+      iServicePack = stringToInt(sVersion[2]);
+    } else if (sVersion[2].length() > 4) {
+      iServicePack = stringToInt(sVersion[2].substring(0, sVersion[2].length() - 4));
+      iBuild = stringToInt(sVersion[2].substring(sVersion[2].length() - 4));
+    } else if ((iMajor == 9) && (iMinor == 0)) {
+      for (int i = 0; i < V90_RELEASE.length; i++) {
+        if (iServicePack <= V90_RELEASE[i]) {
+          iServicePack = i;
+          break;
+        }
+      }
+    } else if ((iMajor == 9) && (iMinor == 1)) {
+      for (int i = 0; i < V91_RELEASE.length; i++) {
+        if (iServicePack <= V91_RELEASE[i]) {
+          iServicePack = i;
+          break;
+        }
+      }
+    }
+
+    return new BbVersion(iMajor, iMinor, iServicePack, iBuild);
+
+  }
+
+  /**
+   * Gets the major release number.
+   *
+   * @return         the major release number
+   */
+  public int getMajor() {
+
+    return this.major;
+
+  }
+
+  /**
+   * Gets the minor release number.
+   *
+   * @return         the minor release number
+   */
+  public int getMinor() {
+
+    return this.minor;
+
+  }
+
+  /**
+   * Gets the service pack number.
+   *
+   * @return         the service pack number
+   */
+  public int getServicePack() {
+
+    return this.servicePack;
+
+  }
+
+  /**
+   * Gets the build number.
+   *
+   * @return         the build number
+   */
+  public int getBuild() {
+
+    return this.build;
+
+  }
+
+  /**
+   * Gets the version number as an array of its elements.
+   *
+   * @return         version number separated into its 4 integer elements (e.g. 9, 1, 9, 132)
+   */
+  public int[] toArray() {
+
+    return new int[] {this.major, this.minor, this.servicePack, this.build};
+
+  }
+
+  /**
+   * Checks whether this version is at a specific release, or later.
+   *
+   * @param  major        the major release number
+   * @param  minor        the minor release number
+   * @param  servicePack  the service pack number
+   * @return              <code>true</code> if this version has the specified version number or greater
+   */
+  public boolean atLeast(int major, int minor, int servicePack) {
+
+    boolean ok = false;
+    if (this.major > major) {
+      ok = true;
+    } else if (this.major == major) {
+      if (this.minor > minor) {
+        ok = true;
+      } else if (this.minor == minor) {
+        ok = this.servicePack >= servicePack;
+      }
+    }
+
+    return ok;
+
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+
+    boolean equal = false;
+    if (obj instanceof BbVersion) {
+      BbVersion other = (BbVersion)obj;
+      equal = (this.major == other.major) && (this.minor == other.minor) &&
+         (this.servicePack == other.servicePack) && (this.build == other.build);
+    }
+
+    return equal;
+
+  }
+
+  @Override
+  public int hashCode() {
+
+    return (((this.major * 31) + this.minor) * 31 + this.servicePack) * 31 + this.build;
+
+  }
+
+  @Override
+  public String toString() {
+
+    return this.major + "." + this.minor + "." + this.servicePack + "." + this.build;
+
+  }
+
+// ---------------------------------------------------
+// Function to convert a String value to an int value
+  private static int stringToInt(String value) {
+
+    int iValue;
+    try {
+      iValue = Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      iValue = 0;
+    }
+
+    return iValue;
+
+  }
+
+}
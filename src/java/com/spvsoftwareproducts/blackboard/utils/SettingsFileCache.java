@@ -0,0 +1,339 @@
+/*
+    SettingsFileCache - Class providing a shared cache of B2Context settings files
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation; either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package com.spvsoftwareproducts.blackboard.utils;
+
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.Properties;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * SettingsFileCache holds the parsed contents of settings files so that they
+ * are shared by all B2Context instances rather than being re-read for each one.
+ * <p>
+ * Entries are keyed by the absolute path of the file and are only used while the
+ * last modified time and length of the file are unchanged; files written via
+ * {@link #store} are placed straight back into the cache.  Copies of the cached
+ * properties are returned so callers are free to update them.
+ * <p>
+ * Files are saved by writing to a temporary file in the same directory which is
+ * then moved over the original, so readers never see a partially written file.
+ * Access to each file is serialised within the JVM using a set of striped
+ * read/write locks keyed on the file path.  {@link #update} re-reads the file
+ * under its write lock and only applies the settings changed by the caller, so
+ * concurrent updates of different settings in the same file are not lost.
+ *
+ * @version     1.0
+ */
+class SettingsFileCache {
+
+  private static final int CAPACITY = 1000;
+  private static final int LOCK_STRIPES = 32;
+  private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+  private static final ReadWriteLock[] locks = new ReadWriteLock[LOCK_STRIPES];
+
+  static {
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      locks[i] = new ReentrantReadWriteLock();
+    }
+  }
+
+  private static final Map<String, SettingsFileEntry> cache = new LinkedHashMap<String, SettingsFileEntry>(16, 0.75f, true) {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, SettingsFileEntry> eldest) {
+
+      return size() > CAPACITY;
+
+    }
+
+  };
+
+  private SettingsFileCache() {
+  }
+
+  private static ReadWriteLock getLock(String key) {
+
+    return locks[(key.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+
+  }
+
+  /**
+   * Loads the properties from a settings file, using the cached copy when the file has not changed.
+   *
+   * @param configFile    the settings file
+   * @return              a copy of the settings
+   * @throws IOException  if the file could not be read
+   */
+  static Properties load(File configFile) throws IOException {
+
+    String key = configFile.getAbsolutePath();
+    ReadWriteLock lock = getLock(key);
+    lock.readLock().lock();
+    try {
+      long lastModified = configFile.lastModified();
+      long length = configFile.length();
+      SettingsFileEntry entry;
+      synchronized (cache) {
+        entry = cache.get(key);
+      }
+      if ((entry == null) || !entry.isCurrent(lastModified, length)) {
+        Properties props = new Properties();
+        FileInputStream fiStream = new FileInputStream(configFile);
+        try {
+          props.load(fiStream);
+        } finally {
+          fiStream.close();
+        }
+        entry = new SettingsFileEntry(props, lastModified, length);
+        synchronized (cache) {
+          cache.put(key, entry);
+        }
+      }
+
+      return entry.getProperties();
+    } finally {
+      lock.readLock().unlock();
+    }
+
+  }
+
+  /**
+   * Saves properties to a settings file and updates the cache with the saved values.
+   * <p>
+   * The properties are written to a temporary file which is synced to disk before
+   * replacing the settings file, so a failure part way through leaves the existing
+   * settings intact.
+   *
+   * @param configFile    the settings file
+   * @param props         the settings to be saved
+   * @param description   description to be included as a comment in the file
+   * @throws IOException  if the file could not be written
+   */
+  static void store(File configFile, Properties props, String description) throws IOException {
+
+    String key = configFile.getAbsolutePath();
+    ReadWriteLock lock = getLock(key);
+    lock.writeLock().lock();
+    try {
+      write(configFile, props, description);
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+  }
+
+  /**
+   * Applies the changes made to a set of settings to a settings file.
+   * <p>
+   * The file is re-read while holding its write lock and only those settings
+   * whose values differ between <code>base</code> (the settings as originally
+   * loaded) and <code>props</code> are added, changed or removed, so changes
+   * saved by others since the file was loaded are retained.  The file is deleted
+   * if no settings remain.
+   *
+   * @param configFile    the settings file
+   * @param base          the settings as loaded from the file
+   * @param props         the settings to be saved
+   * @param description   description to be included as a comment in the file
+   * @return              the settings now held in the file
+   * @throws IOException  if the file could not be read or written
+   */
+  static Properties update(File configFile, Properties base, Properties props, String description) throws IOException {
+
+    String key = configFile.getAbsolutePath();
+    ReadWriteLock lock = getLock(key);
+    lock.writeLock().lock();
+    try {
+      Properties current = new Properties();
+      if (configFile.exists()) {
+        FileInputStream fiStream = new FileInputStream(configFile);
+        try {
+          current.load(fiStream);
+        } finally {
+          fiStream.close();
+        }
+      }
+      Properties merged = new Properties();
+      merged.putAll(current);
+      Set<Object> names = new HashSet<Object>(base.keySet());
+      names.addAll(props.keySet());
+      Object value;
+      for (Iterator<Object> iter = names.iterator(); iter.hasNext();) {
+        Object name = iter.next();
+        value = props.get(name);
+        if ((value == null) && base.containsKey(name)) {
+          merged.remove(name);
+        } else if ((value != null) && !value.equals(base.get(name))) {
+          merged.put(name, value);
+        }
+      }
+      if (merged.isEmpty()) {
+        synchronized (cache) {
+          cache.remove(key);
+        }
+        if (configFile.exists() && !configFile.delete()) {
+          throw new IOException("Unable to delete " + key);
+        }
+      } else if (!merged.equals(current) || !configFile.exists()) {
+        write(configFile, merged, description);
+      }
+
+      return merged;
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+  }
+
+  private static void write(File configFile, Properties props, String description) throws IOException {
+
+    String key = configFile.getAbsolutePath();
+    synchronized (cache) {
+      cache.remove(key);
+    }
+    File tempFile = File.createTempFile(configFile.getName() + ".", TEMP_FILE_EXTENSION, configFile.getAbsoluteFile().getParentFile());
+    try {
+      FileOutputStream foStream = new FileOutputStream(tempFile);
+      try {
+        props.store(foStream, description);
+        foStream.flush();
+        foStream.getFD().sync();
+      } finally {
+        foStream.close();
+      }
+      try {
+        Files.move(tempFile.toPath(), configFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile.toPath(), configFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      if (tempFile.exists() && !tempFile.delete()) {
+        tempFile.deleteOnExit();
+      }
+    }
+    SettingsFileEntry entry = new SettingsFileEntry(props, configFile.lastModified(), configFile.length());
+    synchronized (cache) {
+      cache.put(key, entry);
+    }
+
+  }
+
+  /**
+   * Deletes a settings file and removes it from the cache.
+   *
+   * @param configFile    the settings file
+   * @return              <code>true</code> if the file was deleted
+   */
+  static boolean delete(File configFile) {
+
+    String key = configFile.getAbsolutePath();
+    ReadWriteLock lock = getLock(key);
+    lock.writeLock().lock();
+    try {
+      synchronized (cache) {
+        cache.remove(key);
+      }
+
+      return configFile.delete();
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+  }
+
+  /**
+   * Removes a settings file from the cache.
+   *
+   * @param configFile    the settings file
+   */
+  static void remove(File configFile) {
+
+    synchronized (cache) {
+      cache.remove(configFile.getAbsolutePath());
+    }
+
+  }
+
+  /**
+   * Clears the cache.
+   */
+  static void clear() {
+
+    synchronized (cache) {
+      cache.clear();
+    }
+
+  }
+
+}
+
+/**
+ * SettingsFileEntry represents the cached contents of a settings file together
+ * with the file attributes at the time it was read.
+ *
+ * @version     1.0
+ */
+class SettingsFileEntry {
+
+  private final Properties props;
+  private final long lastModified;
+  private final long length;
+
+  SettingsFileEntry(Properties props, long lastModified, long length) {
+
+    this.props = new Properties();
+    this.props.putAll(props);
+    this.lastModified = lastModified;
+    this.length = length;
+
+  }
+
+  boolean isCurrent(long lastModified, long length) {
+
+    return (this.lastModified == lastModified) && (this.length == length);
+
+  }
+
+  Properties getProperties() {
+
+    Properties copy = new Properties();
+    copy.putAll(this.props);
+
+    return copy;
+
+  }
+
+}
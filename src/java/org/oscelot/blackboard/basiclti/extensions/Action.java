@@ -20,14 +20,8 @@
  */
 package org.oscelot.blackboard.basiclti.extensions;
 
-import java.util.List;
-
-import com.spvsoftwareproducts.blackboard.utils.B2Context;
-import org.oscelot.blackboard.lti.Tool;
-
 public interface Action {
 
-    boolean execute(String actionName, B2Context b2Context, Tool tool,
-                    List<String> serviceData, Response response);
+    boolean execute(String actionName, ServiceRequest serviceRequest);
 
 }
@@ -36,34 +36,30 @@ import net.oauth.server.OAuthServlet;
 import net.oauth.OAuthConsumer;
 import net.oauth.OAuthAccessor;
 import net.oauth.OAuthValidator;
-import net.oauth.SimpleOAuthValidator;
 import net.oauth.OAuthException;
 
 import com.spvsoftwareproducts.blackboard.utils.B2Context;
 
 import org.oscelot.blackboard.lti.Tool;
 import org.oscelot.blackboard.lti.Constants;
+import org.oscelot.blackboard.lti.NonceValidator;
 import org.oscelot.blackboard.lti.Utils;
 
 public class Controller extends HttpServlet {
 
     private static final long serialVersionUID = 8851746207424719168L;
 
-    private B2Context b2Context = null;
-    private Response response = null;
-    private List<String> servicesData = null;
-    private Tool tool = null;
-
     protected void processRequest(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 
-        this.b2Context = new B2Context(request);
-        this.response = new Response();
-        this.response.setCodeMinor(b2Context.getResourceString("ext.codeminor.request"));
+        ServiceRequest serviceRequest = new ServiceRequest(new B2Context(request));
+        B2Context b2Context = serviceRequest.getB2Context();
+        Response serviceResponse = serviceRequest.getResponse();
+        serviceResponse.setCodeMinor(b2Context.getResourceString("ext.codeminor.request"));
 
-        String consumerKey = this.b2Context.getRequestParameter("oauth_consumer_key", null);
-        String version = this.b2Context.getRequestParameter("lti_version", null);
-        String actionName = this.b2Context.getRequestParameter("lti_message_type", "");
-        this.response.setAction(actionName);
+        String consumerKey = b2Context.getRequestParameter("oauth_consumer_key", null);
+        String version = b2Context.getRequestParameter("lti_version", null);
+        String actionName = b2Context.getRequestParameter("lti_message_type", "");
+        serviceResponse.setAction(actionName);
 
         boolean ok = (consumerKey != null) && (version != null) && (actionName.length() > 0);
         Action action = null;
@@ -86,32 +82,32 @@ public class Controller extends HttpServlet {
             }
             ok = (action != null);
             if (!ok) {
-                this.response.setCodeMinor(b2Context.getResourceString("ext.codeminor.action"));
+                serviceResponse.setCodeMinor(b2Context.getResourceString("ext.codeminor.action"));
             }
         }
         if (ok) {
-            ok = getServicesData(consumerKey, paramName);
+            ok = getServicesData(serviceRequest, consumerKey, paramName);
             if (!ok) {
-                this.response.setCodeMinor(b2Context.getResourceString("ext.codeminor.security"));
+                serviceResponse.setCodeMinor(b2Context.getResourceString("ext.codeminor.security"));
             }
         }
         if (ok) {
-            ok = checkSignature(consumerKey);
+            ok = checkSignature(serviceRequest, consumerKey);
             if (!ok) {
-                this.response.setCodeMinor(b2Context.getResourceString("ext.codeminor.signature"));
+                serviceResponse.setCodeMinor(b2Context.getResourceString("ext.codeminor.signature"));
             }
         }
         if (ok) {
-            ok = action.execute(actionName, this.b2Context, this.tool, this.servicesData, this.response);
+            ok = action.execute(actionName, serviceRequest);
             if (!ok) {
-                this.response.setCodeMinor(b2Context.getResourceString("ext.codeminor.action"));
+                serviceResponse.setCodeMinor(b2Context.getResourceString("ext.codeminor.action"));
             }
         }
 
-        this.response.setOk(ok);
+        serviceResponse.setOk(ok);
         response.setContentType("text/xml");
         response.setCharacterEncoding("UTF-8");
-        response.getWriter().print(this.response.toXML());
+        serviceResponse.write(response.getWriter());
 
     }
 
@@ -130,9 +126,10 @@ public class Controller extends HttpServlet {
         return "Extension services";
     }
 
-    public boolean getServicesData(String key, String paramName) {
+    public boolean getServicesData(ServiceRequest serviceRequest, String key, String paramName) {
 
-        String param = this.b2Context.getRequestParameter(paramName, "");
+        B2Context b2Context = serviceRequest.getB2Context();
+        String param = b2Context.getRequestParameter(paramName, "");
         String[] data = param.split(Constants.HASH_SEPARATOR);
 
         boolean ok = data.length >= 4;
@@ -156,25 +153,28 @@ public class Controller extends HttpServlet {
                 B2Context.log(true, "getServicesData - no courseId: " + param);
             }
         }
+        Tool tool = null;
         if (ok) {
-            this.b2Context.setCourseId(courseId);
-            this.b2Context.setContentId(contentId);
-            this.b2Context.setGroupId(groupId);
-            Utils.checkInheritSettings(this.b2Context);
-            this.tool = Utils.getTool(this.b2Context, toolId);
+            b2Context.setCourseId(courseId);
+            b2Context.setContentId(contentId);
+            b2Context.setGroupId(groupId);
+            Utils.checkInheritSettings(b2Context);
+            tool = Utils.getTool(b2Context, toolId);
+            serviceRequest.setTool(tool);
             ok = key.equals(tool.getLaunchGUID());
             if (!ok) {
                 B2Context.log(true, "getServicesData - invalid consumer key: " + key + "; expected " + tool.getLaunchGUID());
             }
         }
         if (ok) {
-            this.servicesData = new ArrayList<String>();
+            List<String> servicesData = new ArrayList<String>();
             StringBuilder hash = new StringBuilder();
             for (int i = 1; i < data.length; i++) {
                 String item = Utils.decodeHash(data[i]);
-                this.servicesData.add(item);
+                servicesData.add(item);
                 hash.append(item);
             }
+            serviceRequest.setServicesData(servicesData);
             ok = Utils.getHash(hash.toString(), tool.getSendUUID()).equals(Utils.decodeHash(data[0]));
             if (!ok) {
                 B2Context.log(true, "getServicesData - invalid hash");
@@ -185,27 +185,28 @@ public class Controller extends HttpServlet {
 
     }
 
-    private boolean checkSignature(String consumerKey) {
+    private boolean checkSignature(ServiceRequest serviceRequest, String consumerKey) {
 
         boolean ok = true;
 
-        String secret = tool.getLaunchSecret();
+        B2Context b2Context = serviceRequest.getB2Context();
+        String secret = serviceRequest.getTool().getLaunchSecret();
         OAuthConsumer oAuthConsumer = new OAuthConsumer(Constants.OAUTH_CALLBACK, consumerKey, secret, null);
         OAuthAccessor oAuthAccessor = new OAuthAccessor(oAuthConsumer);
-        OAuthValidator validator = new SimpleOAuthValidator();
-        OAuthMessage message = OAuthServlet.getMessage(this.b2Context.getRequest(), null);
+        OAuthValidator validator = new NonceValidator(b2Context);
+        OAuthMessage message = OAuthServlet.getMessage(b2Context.getRequest(), null);
         try {
             message.validateMessage(oAuthAccessor, validator);
         } catch (OAuthException e) {
-            this.response.setCodeMinor(this.b2Context.getResourceString("ext.codeminor.signature"));
+            serviceRequest.getResponse().setCodeMinor(b2Context.getResourceString("ext.codeminor.signature"));
             ok = false;
             B2Context.log(true, "checkSignature error for " + consumerKey + "/" + secret);
         } catch (IOException e) {
-            this.response.setCodeMinor(this.b2Context.getResourceString("ext.codeminor.signature"));
+            serviceRequest.getResponse().setCodeMinor(b2Context.getResourceString("ext.codeminor.signature"));
             ok = false;
             B2Context.log(true, "checkSignature error for " + consumerKey + "/" + secret);
         } catch (URISyntaxException e) {
-            this.response.setCodeMinor(this.b2Context.getResourceString("ext.codeminor.signature"));
+            serviceRequest.getResponse().setCodeMinor(b2Context.getResourceString("ext.codeminor.signature"));
             ok = false;
             B2Context.log(true, "checkSignature error for " + consumerKey + "/" + secret);
         }
@@ -0,0 +1,36 @@
+/*
+    basiclti - Building Block to provide support for Basic LTI
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package org.oscelot.blackboard.basiclti.extensions;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * DataWriter is implemented by actions whose response data is written to the
+ * response one item at a time, after the status, rather than being built up as
+ * a single string by the action itself.  Any data which may fail to load must
+ * be loaded when the action is executed, before the status is written.
+ */
+public interface DataWriter {
+
+    void write(Writer writer) throws IOException;
+
+}
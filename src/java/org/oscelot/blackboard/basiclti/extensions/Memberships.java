@@ -25,6 +25,13 @@ import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Collections;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import java.io.IOException;
+import java.io.Writer;
 
 import blackboard.data.course.CourseMembership.Role;
 import blackboard.persist.Id;
@@ -46,196 +53,121 @@ import org.oscelot.blackboard.lti.Tool;
 import org.oscelot.blackboard.lti.Utils;
 import org.oscelot.blackboard.lti.Constants;
 
-public class Memberships implements Action {
+public class Memberships implements Action, DataWriter {
+
+    private B2Context b2Context = null;
+    private Tool tool = null;
+    private List<String> serviceData = null;
+    private boolean systemRolesOnly = false;
+    private boolean includeGroups = false;
+    private List<User> users = null;
+    private Map<Id, CourseMembership> userMemberships = null;
+    private Map<Id, Group> groups = null;
+    private Map<Id, List<Group>> groupMembers = null;
+    private Map<Id, Boolean> contentStatusMap = null;
+    private int offset = 0;
+    private int limit = -1;
 
     public Memberships() {
     }
 
     @Override
-    public boolean execute(String actionName, B2Context b2Context, Tool tool, List<String> serviceData,
-            Response response) {
+    public boolean execute(String actionName, ServiceRequest serviceRequest) {
+
+        this.b2Context = serviceRequest.getB2Context();
+        this.tool = serviceRequest.getTool();
+        this.serviceData = serviceRequest.getServicesData();
+        Response response = serviceRequest.getResponse();
 
         boolean ok = actionName.equals(Constants.EXT_MEMBERSHIPS_READ)
                 || actionName.equals(Constants.EXT_MEMBERSHIP_GROUPS_READ);
 
         if (ok) {
             String codeMinor;
-            if (!tool.getSendMembershipsService().equals(Constants.DATA_TRUE)
-                    || !tool.getSendUserId().equals(Constants.DATA_MANDATORY)) {
+            if (!this.tool.getSendMembershipsService().equals(Constants.DATA_TRUE)
+                    || !this.tool.getSendUserId().equals(Constants.DATA_MANDATORY)) {
                 codeMinor = "ext.codeminor.notavailable";
             } else {
                 codeMinor = "ext.codeminor.success";
-                serviceData.remove(serviceData.size() - 1);  // remove time
-                StringBuilder xml = new StringBuilder();
+                this.serviceData.remove(this.serviceData.size() - 1);  // remove time
 
                 Id contentId = null;
-                if (b2Context.hasContentContext()) {
-                    contentId = b2Context.getContentId();
+                if (this.b2Context.hasContentContext()) {
+                    contentId = this.b2Context.getContentId();
                 }
-                boolean systemRolesOnly = !b2Context.getSetting(Constants.TOOL_COURSE_ROLES, Constants.DATA_FALSE).equals(Constants.DATA_TRUE);
-                boolean includeAll = !tool.getLimitMemberships().equals(Constants.DATA_TRUE);
-                boolean includeGroups = actionName.equals(Constants.EXT_MEMBERSHIP_GROUPS_READ)
-                        && tool.getGroupMemberships().equals(Constants.DATA_TRUE);
-                String groupPrefix = tool.getMembershipsGroupNames();
+                this.systemRolesOnly = !this.b2Context.getSetting(Constants.TOOL_COURSE_ROLES, Constants.DATA_FALSE).equals(Constants.DATA_TRUE);
+                boolean includeAll = !this.tool.getLimitMemberships().equals(Constants.DATA_TRUE);
+                this.includeGroups = actionName.equals(Constants.EXT_MEMBERSHIP_GROUPS_READ)
+                        && this.tool.getGroupMemberships().equals(Constants.DATA_TRUE);
+                String groupPrefix = this.tool.getMembershipsGroupNames();
                 if ((groupPrefix.length() > 0) && (groupPrefix.indexOf("*") < 0)) {
                     groupPrefix += "*";
                 }
+                Integer value = Utils.stringToInteger(this.b2Context.getRequestParameter(Constants.EXT_MEMBERSHIPS_OFFSET, ""));
+                if ((value != null) && (value > 0)) {
+                    this.offset = value;
+                }
+                value = Utils.stringToInteger(this.b2Context.getRequestParameter(Constants.EXT_MEMBERSHIPS_LIMIT, ""));
+                if ((value != null) && (value > 0)) {
+                    this.limit = value;
+                }
+                this.users = Collections.emptyList();
+                this.userMemberships = new HashMap<Id, CourseMembership>();
                 try {
                     CourseMembershipDbLoader courseMembershipLoader = CourseMembershipDbLoader.Default.getInstance();
-                    Map<Id, Group> groups = null;
-                    Map<Id, List<Id>> groupMembers = null;
-                    if (includeGroups) {
-                        groups = new HashMap<Id, Group>();
+                    if (this.includeGroups) {
+                        this.groups = new HashMap<Id, Group>();
                         GroupDbLoader groupLoader = GroupDbLoader.Default.getInstance();
                         List<Group> loadGroups;
                         if (B2Context.getIsVersion(9, 1, 8)) {
-                            loadGroups = groupLoader.loadGroupsAndSetsByCourseId(b2Context.getCourseId());
+                            loadGroups = groupLoader.loadGroupsAndSetsByCourseId(this.b2Context.getCourseId());
                         } else {
-                            loadGroups = groupLoader.loadByCourseId(b2Context.getCourseId());
+                            loadGroups = groupLoader.loadByCourseId(this.b2Context.getCourseId());
                         }
+                        Pattern groupPattern = getGroupPattern(groupPrefix);
                         for (Group group : loadGroups) {
-                            String title = group.getTitle();
-                            if (group.isGroupSet() || (group.getIsAvailable() && ((groupPrefix.length() <= 0) || title.matches(groupPrefix)))) {
-                                groups.put(group.getId(), group);
+                            if (group.isGroupSet() || (group.getIsAvailable()
+                                    && ((groupPrefix.length() <= 0) || ((groupPattern != null) && groupPattern.matcher(group.getTitle()).matches())))) {
+                                this.groups.put(group.getId(), group);
                             }
                         }
                         GroupMembershipDbLoader groupMembershipLoader = GroupMembershipDbLoader.Default.getInstance();
-                        List<GroupMembership> groupMemberships = groupMembershipLoader.loadByCourseId(b2Context.getCourseId());
-                        groupMembers = new HashMap<Id, List<Id>>();
+                        List<GroupMembership> groupMemberships = groupMembershipLoader.loadByCourseId(this.b2Context.getCourseId());
+                        this.groupMembers = new HashMap<Id, List<Group>>();
+                        Group group;
                         for (GroupMembership groupMembership : groupMemberships) {
-                            List<Id> groupIds;
-                            if (!groupMembers.containsKey(groupMembership.getCourseMembershipId())) {
-                                groupIds = new ArrayList<Id>();
-                            } else {
-                                groupIds = groupMembers.get(groupMembership.getCourseMembershipId());
+                            group = this.groups.get(groupMembership.getGroupId());
+                            if (group != null) {
+                                List<Group> memberGroups = this.groupMembers.get(groupMembership.getCourseMembershipId());
+                                if (memberGroups == null) {
+                                    memberGroups = new ArrayList<Group>();
+                                    this.groupMembers.put(groupMembership.getCourseMembershipId(), memberGroups);
+                                }
+                                memberGroups.add(group);
                             }
-                            groupIds.add(groupMembership.getGroupId());
-                            groupMembers.put(groupMembership.getCourseMembershipId(), groupIds);
                         }
                     }
-                    List<User> users = UserDbLoader.Default.getInstance().loadByCourseId(b2Context.getCourseId());
-                    Map<Id, Boolean> contentStatusMap = null;
-                    if (contentId != null) {
-                        contentStatusMap = getContentStatusList(contentId, includeAll);
+                    List<CourseMembership> courseMemberships = courseMembershipLoader.loadByCourseId(this.b2Context.getCourseId());
+                    for (CourseMembership courseMembership : courseMemberships) {
+                        this.userMemberships.put(courseMembership.getUserId(), courseMembership);
                     }
-                    xml.append("  <memberships>\n");
-                    for (User user : users) {
-                        CourseMembership courseMembership = null;
-                        Role role = null;
-                        String roles = "";
-                        boolean isAvailable = user.getIsAvailable();
-                        if (isAvailable) {
-                            courseMembership = courseMembershipLoader.loadByCourseAndUserId(
-                                    b2Context.getCourseId(), user.getId());
-                            isAvailable = courseMembership.getIsAvailable();
-                            boolean isVisible = true;
-                            if (isAvailable && (contentStatusMap != null) && contentStatusMap.containsKey(courseMembership.getId())) {
-                                isVisible = contentStatusMap.get(courseMembership.getId());
-                            }
-                            if (isAvailable) {
-                                role = Utils.getRole(courseMembership.getRole(), systemRolesOnly);
-                                roles = Utils.getCRoles(tool.getRole(role.getIdentifier()));
-                                if (tool.getSendAdministrator().equals(Constants.DATA_TRUE)) {
-                                    roles = Utils.addAdminRole(roles, user);
-                                }
-                                roles = Utils.addPreviewRole(roles, user);
-                                isAvailable = ((roles.indexOf(Constants.ROLE_INSTRUCTOR) >= 0) || isVisible);
-                            }
-                        }
-                        if (isAvailable) {
-                            StringBuilder member = new StringBuilder();
-                            String userIdType = tool.getUserIdType();
-                            String userId;
-                            if (userIdType.equals(Constants.DATA_USERNAME)) {
-                                userId = user.getUserName();
-                            } else if (userIdType.equals(Constants.DATA_PRIMARYKEY)) {
-                                userId = user.getId().toExternalString();
-                            } else if (userIdType.equals(Constants.DATA_STUDENTID)) {
-                                userId = user.getStudentId();
-                            } else if (userIdType.equals(Constants.DATA_UUID) && B2Context.getIsVersion(9, 1, 13)) {
-                                userId = user.getUuid();
-                            } else {
-                                userId = user.getBatchUid();
-                            }
-                            member = member.append("      <user_id>").append(Utils.htmlSpecialChars(userId)).append("</user_id>\n");
-                            try {
-                                if (MyPlacesUtil.avatarsEnabled() && tool.getDoSendAvatar()) {
-                                    String image = null;
-                                    if (Utils.displayAvatar(user.getId())) {
-                                        image = MyPlacesUtil.getAvatarImage(user.getId());
-                                    }
-                                    if (image != null) {
-                                        member = member.append("      <user_image>").append(Utils.htmlSpecialChars(b2Context.getServerUrl())).append(Utils.htmlSpecialChars(image)).append("</user_image>\n");
-                                    } else {
-                                        member = member.append("      <user_image></user_image>\n");
-                                    }
-                                }
-                            } catch (Exception e) {
-                            }
-                            if (tool.getDoSendRoles()) {
-                                member = member.append("      <roles>").append(Utils.htmlSpecialChars(roles)).append("</roles>\n");
-                            }
-                            if (tool.getDoSendUserSourcedid()) {
-                                member = member.append("      <person_sourcedid>").append(Utils.htmlSpecialChars(user.getBatchUid())).append("</person_sourcedid>\n");
-                            }
-                            if (tool.getSendEmail().equals(Constants.DATA_MANDATORY)) {
-                                member = member.append("      <person_contact_email_primary>").append(Utils.htmlSpecialChars(user.getEmailAddress())).append("</person_contact_email_primary>\n");
-                            }
-                            if (tool.getSendUsername().equals(Constants.DATA_MANDATORY)) {
-                                member = member.append("      <person_name_given>").append(Utils.htmlSpecialChars(user.getGivenName())).append("</person_name_given>\n");
-                                member = member.append("      <person_name_family>").append(Utils.htmlSpecialChars(user.getFamilyName())).append("</person_name_family>\n");
-                                String fullname = user.getGivenName();
-                                if ((user.getMiddleName() != null) && (user.getMiddleName().length() > 0)) {
-                                    fullname += " " + user.getMiddleName();
-                                }
-                                fullname += " " + user.getFamilyName();
-                                member = member.append("      <person_name_full>").append(Utils.htmlSpecialChars(fullname)).append("</person_name_full>\n");
-                            }
-                            if (role.equals(Role.STUDENT) && tool.getSendUserId().equals(Constants.DATA_MANDATORY)) {
-                                String resultSourcedid = Utils.getServiceId(serviceData, userId, tool.getSendUUID());
-                                member = member.append("      <lis_result_sourcedid>").append(Utils.htmlSpecialChars(resultSourcedid)).append("</lis_result_sourcedid>\n");
-                            }
-                            if (includeGroups && (groupMembers != null)) {
-                                List<Id> groupIds = groupMembers.get(courseMembership.getId());
-                                Group group;
-                                if (groupIds != null) {
-                                    member.append("      <groups>\n");
-                                    for (Id groupId : groupIds) {
-                                        group = groups.get(groupId);
-                                        if (group != null) {
-                                            member.append("        <group>\n");
-                                            member.append("          <id>").append(Utils.htmlSpecialChars(groupId.toExternalString())).append("</id>\n");
-                                            member.append("          <title>").append(Utils.htmlSpecialChars(group.getTitle())).append("</title>\n");
-                                            if (group.isInGroupSet()) {
-                                                group = groups.get(group.getSetId());
-                                                member.append("          <set>\n");
-                                                member.append("            <id>").append(Utils.htmlSpecialChars(group.getId().toExternalString())).append("</id>\n");
-                                                member.append("            <title>").append(Utils.htmlSpecialChars(group.getTitle())).append("</title>\n");
-                                                member.append("          </set>\n");
-                                            }
-                                            member.append("        </group>\n");
-                                        }
-                                    }
-                                    member.append("      </groups>\n");
-                                }
-                            }
-                            if (member.length() > 0) {
-                                xml.append("    <member>\n");
-                                xml.append(member.toString());
-                                xml.append("    </member>\n");
-                            }
-                        }
+                    if (contentId != null) {
+                        this.contentStatusMap = getContentStatusList(contentId, includeAll);
                     }
+                    this.users = UserDbLoader.Default.getInstance().loadByCourseId(this.b2Context.getCourseId());
                 } catch (PersistenceException e) {
+                    B2Context.log(true, null, e);
+                    ok = false;
                 }
-                xml.append("  </memberships>\n");
 
-                response.setData(xml.toString());
-                response.setDescription(b2Context.getResourceString("ext.description.memberships"));
+                if (ok) {
+                    response.setDataWriter(this);
+                    response.setDescription(this.b2Context.getResourceString("ext.description.memberships"));
+                }
 
             }
 
-            response.setCodeMinor(b2Context.getResourceString(codeMinor));
+            response.setCodeMinor(this.b2Context.getResourceString(codeMinor));
 
         }
 
@@ -243,6 +175,166 @@ public class Memberships implements Action {
 
     }
 
+    /**
+     * Writes the memberships element to the response, one member at a time.
+     * <p>
+     * All of the course data is loaded by <code>execute</code> before the status
+     * of the response is written, so each member is written straight to the
+     * response.  When an offset and/or limit has been requested only the members
+     * in that range (after unavailable members have been excluded) are included.
+     *
+     * @param writer the writer for the response
+     *
+     * @throws IOException if the response cannot be written
+     */
+    @Override
+    public void write(Writer writer) throws IOException {
+
+        writer.write("  <memberships>\n");
+        int count = 0;
+        User user;
+        CourseMembership courseMembership;
+        String roles;
+        for (Iterator<User> iter = this.users.iterator(); iter.hasNext() && ((this.limit < 0) || (count < this.offset + this.limit));) {
+            user = iter.next();
+            courseMembership = this.userMemberships.get(user.getId());
+            roles = getRoles(user, courseMembership);
+            if (roles != null) {
+                if (count >= this.offset) {
+                    writer.write("    <member>\n");
+                    writeMember(writer, user, courseMembership, roles);
+                    writer.write("    </member>\n");
+                }
+                count++;
+            }
+        }
+        writer.write("  </memberships>\n");
+
+    }
+
+    private String getRoles(User user, CourseMembership courseMembership) {
+
+        String roles = null;
+        if (user.getIsAvailable() && (courseMembership != null) && courseMembership.getIsAvailable()) {
+            boolean isVisible = true;
+            if ((this.contentStatusMap != null) && this.contentStatusMap.containsKey(courseMembership.getId())) {
+                isVisible = this.contentStatusMap.get(courseMembership.getId());
+            }
+            Role role = Utils.getRole(courseMembership.getRole(), this.systemRolesOnly);
+            roles = Utils.getCRoles(this.tool.getRole(role.getIdentifier()));
+            if (this.tool.getSendAdministrator().equals(Constants.DATA_TRUE)) {
+                roles = Utils.addAdminRole(roles, user);
+            }
+            roles = Utils.addPreviewRole(roles, user);
+            if ((roles.indexOf(Constants.ROLE_INSTRUCTOR) < 0) && !isVisible) {
+                roles = null;
+            }
+        }
+
+        return roles;
+
+    }
+
+    private void writeMember(Writer writer, User user, CourseMembership courseMembership, String roles) throws IOException {
+
+        Role role = Utils.getRole(courseMembership.getRole(), this.systemRolesOnly);
+        String userIdType = this.tool.getUserIdType();
+        String userId;
+        if (userIdType.equals(Constants.DATA_USERNAME)) {
+            userId = user.getUserName();
+        } else if (userIdType.equals(Constants.DATA_PRIMARYKEY)) {
+            userId = user.getId().toExternalString();
+        } else if (userIdType.equals(Constants.DATA_STUDENTID)) {
+            userId = user.getStudentId();
+        } else if (userIdType.equals(Constants.DATA_UUID) && B2Context.getIsVersion(9, 1, 13)) {
+            userId = user.getUuid();
+        } else {
+            userId = user.getBatchUid();
+        }
+        writeElement(writer, "      ", "user_id", userId);
+        boolean sendAvatar = false;
+        String image = null;
+        try {
+            sendAvatar = MyPlacesUtil.avatarsEnabled() && this.tool.getDoSendAvatar();
+            if (sendAvatar && Utils.displayAvatar(user.getId())) {
+                image = MyPlacesUtil.getAvatarImage(user.getId());
+            }
+        } catch (Exception e) {
+        }
+        if (sendAvatar) {
+            if (image != null) {
+                writeElement(writer, "      ", "user_image", this.b2Context.getServerUrl() + image);
+            } else {
+                writer.write("      <user_image></user_image>\n");
+            }
+        }
+        if (this.tool.getDoSendRoles()) {
+            writeElement(writer, "      ", "roles", roles);
+        }
+        if (this.tool.getDoSendUserSourcedid()) {
+            writeElement(writer, "      ", "person_sourcedid", user.getBatchUid());
+        }
+        if (this.tool.getSendEmail().equals(Constants.DATA_MANDATORY)) {
+            writeElement(writer, "      ", "person_contact_email_primary", user.getEmailAddress());
+        }
+        if (this.tool.getSendUsername().equals(Constants.DATA_MANDATORY)) {
+            writeElement(writer, "      ", "person_name_given", user.getGivenName());
+            writeElement(writer, "      ", "person_name_family", user.getFamilyName());
+            String fullname = user.getGivenName();
+            if ((user.getMiddleName() != null) && (user.getMiddleName().length() > 0)) {
+                fullname += " " + user.getMiddleName();
+            }
+            fullname += " " + user.getFamilyName();
+            writeElement(writer, "      ", "person_name_full", fullname);
+        }
+        if (role.equals(Role.STUDENT) && this.tool.getSendUserId().equals(Constants.DATA_MANDATORY)) {
+            String resultSourcedid = Utils.getServiceId(this.serviceData, userId, this.tool.getSendUUID());
+            writeElement(writer, "      ", "lis_result_sourcedid", resultSourcedid);
+        }
+        if (this.includeGroups && (this.groupMembers != null)) {
+            List<Group> memberGroups = this.groupMembers.get(courseMembership.getId());
+            if (memberGroups != null) {
+                writer.write("      <groups>\n");
+                for (Group group : memberGroups) {
+                    writer.write("        <group>\n");
+                    writeElement(writer, "          ", "id", group.getId().toExternalString());
+                    writeElement(writer, "          ", "title", group.getTitle());
+                    if (group.isInGroupSet()) {
+                        Group groupSet = this.groups.get(group.getSetId());
+                        writer.write("          <set>\n");
+                        writeElement(writer, "            ", "id", groupSet.getId().toExternalString());
+                        writeElement(writer, "            ", "title", groupSet.getTitle());
+                        writer.write("          </set>\n");
+                    }
+                    writer.write("        </group>\n");
+                }
+                writer.write("      </groups>\n");
+            }
+        }
+
+    }
+
+    private static void writeElement(Writer writer, String indent, String name, String value) throws IOException {
+
+        writer.write(indent + "<" + name + ">" + Utils.htmlSpecialChars(value) + "</" + name + ">\n");
+
+    }
+
+    private static Pattern getGroupPattern(String groupPrefix) {
+
+        Pattern pattern = null;
+        if (groupPrefix.length() > 0) {
+            try {
+                pattern = Pattern.compile(groupPrefix);
+            } catch (PatternSyntaxException e) {
+                B2Context.log(true, "Invalid memberships group name prefix: " + groupPrefix);
+            }
+        }
+
+        return pattern;
+
+    }
+
     private Map<Id, Boolean> getContentStatusList(Id contentId, boolean includeAll) throws PersistenceException {
 
         List<ContentStatus> contentStatusList = ContentStatusDbLoader.Default.getInstance().loadByContentId(contentId);
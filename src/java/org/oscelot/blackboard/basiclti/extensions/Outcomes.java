@@ -28,17 +28,9 @@ import java.text.SimpleDateFormat;
 
 import org.oscelot.blackboard.lti.Gradebook;
 
-import blackboard.platform.persistence.PersistenceServiceFactory;
-import blackboard.persist.BbPersistenceManager;
 import blackboard.persist.KeyNotFoundException;
 import blackboard.persist.PersistenceException;
-import blackboard.persist.user.UserDbLoader;
-import blackboard.persist.user.UserSearch;
-import blackboard.persist.user.UserSearch.SearchKey;
-import blackboard.persist.user.UserSearch.SearchParameter;
-import blackboard.persist.SearchOperator;
 import blackboard.data.user.User;
-import blackboard.persist.course.CourseMembershipDbLoader;
 import blackboard.data.course.CourseMembership;
 import blackboard.data.gradebook.Lineitem;
 import blackboard.data.gradebook.Score;
@@ -48,14 +40,19 @@ import com.spvsoftwareproducts.blackboard.utils.B2Context;
 import org.oscelot.blackboard.lti.Tool;
 import org.oscelot.blackboard.lti.Utils;
 import org.oscelot.blackboard.lti.Constants;
+import org.oscelot.blackboard.lti.UserCache;
 
 public class Outcomes implements Action {
 
     public Outcomes() {
     }
 
-    public boolean execute(String actionName, B2Context b2Context, Tool tool, List<String> serviceData,
-            Response response) {
+    public boolean execute(String actionName, ServiceRequest serviceRequest) {
+
+        B2Context b2Context = serviceRequest.getB2Context();
+        Tool tool = serviceRequest.getTool();
+        List<String> serviceData = serviceRequest.getServicesData();
+        Response response = serviceRequest.getResponse();
 
         boolean ok = true;
 
@@ -71,32 +68,11 @@ public class Outcomes implements Action {
                 codeMinor = "ext.codeminor.notavailable";
             }
         }
-        BbPersistenceManager bbPm = null;
 // Load user object
         User user = null;
         if (ok) {
-            bbPm = PersistenceServiceFactory.getInstance().getDbPersistenceManager();
-            String userId = serviceData.get(3);
             try {
-                UserDbLoader userdbloader = (UserDbLoader) bbPm.getLoader(UserDbLoader.TYPE);
-                String userIdType = tool.getUserIdType();
-                if (userIdType.equals(Constants.DATA_USERNAME)) {
-                    user = userdbloader.loadByUserName(userId);
-                } else if (userIdType.equals(Constants.DATA_PRIMARYKEY)) {
-                    user = userdbloader.loadById(bbPm.generateId(User.DATA_TYPE, userId));
-                } else if (userIdType.equals(Constants.DATA_UUID)) {
-                    user = userdbloader.loadByUuid(userId);
-                } else if (userIdType.equals(Constants.DATA_STUDENTID)) {
-                    SearchParameter sp = new SearchParameter(SearchKey.StudentId, userId, SearchOperator.Equals);
-                    UserSearch us = new UserSearch();
-                    us.addParameter(sp);
-                    List<User> users = userdbloader.loadByUserSearch(us);
-                    if (users.size() > 0) {
-                        user = users.get(0);
-                    }
-                } else if (userIdType.equals(Constants.DATA_BATCHUID)) {
-                    user = userdbloader.loadByBatchUid(userId);
-                }
+                user = UserCache.getUser(tool.getUserIdType(), serviceData.get(3));
                 ok = (user != null);
                 if (ok) {
                     ok = user.getIsAvailable();
@@ -110,11 +86,10 @@ public class Outcomes implements Action {
             }
         }
 // Load enrolment
+        CourseMembership coursemembership = null;
         if (ok) {
-            CourseMembership coursemembership;
             try {
-                CourseMembershipDbLoader coursemembershipdbloader = (CourseMembershipDbLoader) bbPm.getLoader(CourseMembershipDbLoader.TYPE);
-                coursemembership = coursemembershipdbloader.loadByCourseAndUserId(b2Context.getCourseId(), user.getId());
+                coursemembership = UserCache.getMembership(b2Context.getCourseId(), user.getId());
                 ok = coursemembership.getRole().equals(CourseMembership.Role.STUDENT) && coursemembership.getIsAvailable();
                 if (!ok) {
                     codeMinor = "ext.codeminor.role";
@@ -137,7 +112,7 @@ public class Outcomes implements Action {
             if (actionName.equals(Constants.EXT_OUTCOMES_WRITE)) {
                 ok = ((value != null) && (value.length() > 0));
                 if (ok) {
-                    ok = Gradebook.updateGradebook(user, lineitem, type, value);
+                    ok = Gradebook.updateGradebook(coursemembership, lineitem, type, value);
                     if (ok) {
                         description = "ext.description.outcomes.updated";
                         actionName = Constants.EXT_OUTCOMES_READ;
@@ -149,7 +124,7 @@ public class Outcomes implements Action {
                 }
             }
             if (actionName.equals(Constants.EXT_OUTCOMES_DELETE)) {
-                ok = Gradebook.updateGradebook(user, lineitem, type, "");
+                ok = Gradebook.updateGradebook(coursemembership, lineitem, type, "");
                 if (ok) {
                     value = null;
                     description = "ext.description.outcomes.deleted";
@@ -157,7 +132,7 @@ public class Outcomes implements Action {
                     codeMinor = "ext.codeminor.system";
                 }
             } else if (actionName.equals(Constants.EXT_OUTCOMES_READ)) {
-                Score score = Gradebook.getScore(lineitem, user.getId(), false);
+                Score score = Gradebook.getScore(lineitem, coursemembership, false);
                 if (score != null) {
                     value = score.getGrade();
                     if (score.getOutcome().getGradebookStatus().equals(GradebookStatus.NEEDSGRADING)) {
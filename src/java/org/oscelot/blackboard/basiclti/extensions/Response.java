@@ -20,6 +20,10 @@
  */
 package org.oscelot.blackboard.basiclti.extensions;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
 import org.oscelot.blackboard.lti.Utils;
 
 public class Response {
@@ -29,6 +33,7 @@ public class Response {
     private String codeMinor = null;
     private String description = null;
     private String data = null;
+    private DataWriter dataWriter = null;
 
     public Response() {
     }
@@ -57,6 +62,14 @@ public class Response {
         this.data = data;
     }
 
+    public DataWriter getDataWriter() {
+        return dataWriter;
+    }
+
+    public void setDataWriter(DataWriter dataWriter) {
+        this.dataWriter = dataWriter;
+    }
+
     public String getDescription() {
         return description;
     }
@@ -75,6 +88,18 @@ public class Response {
 
     public String toXML() {
 
+        StringWriter xml = new StringWriter();
+        try {
+            write(xml);
+        } catch (IOException e) {
+        }
+
+        return xml.toString();
+
+    }
+
+    public void write(Writer writer) throws IOException {
+
         StringBuilder xml = new StringBuilder();
         xml.append("<message_response>\n");
         xml.append("  <lti_message_type>").append(this.action).append("</lti_message_type>\n");
@@ -96,9 +121,11 @@ public class Response {
         if (this.data != null) {
             xml.append(data);
         }
-        xml.append("</message_response>");
-
-        return xml.toString();
+        writer.write(xml.toString());
+        if (this.dataWriter != null) {
+            this.dataWriter.write(writer);
+        }
+        writer.write("</message_response>");
 
     }
 
@@ -20,8 +20,6 @@
  */
 package org.oscelot.blackboard.basiclti.extensions;
 
-import java.util.List;
-
 import com.spvsoftwareproducts.blackboard.utils.B2Context;
 import org.oscelot.blackboard.lti.Tool;
 import org.oscelot.blackboard.lti.Constants;
@@ -32,8 +30,11 @@ public class Setting implements Action {
     }
 
     @Override
-    public boolean execute(String actionName, B2Context b2Context, Tool tool, List<String> serviceData,
-            Response response) {
+    public boolean execute(String actionName, ServiceRequest serviceRequest) {
+
+        B2Context b2Context = serviceRequest.getB2Context();
+        Tool tool = serviceRequest.getTool();
+        Response response = serviceRequest.getResponse();
 
         boolean ok = true;
 
@@ -31,7 +31,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.SingleThreadModel;
 
 import org.jdom.Document;
 import org.jdom.Element;
@@ -41,31 +40,26 @@ import net.oauth.server.OAuthServlet;
 import net.oauth.OAuthConsumer;
 import net.oauth.OAuthAccessor;
 import net.oauth.OAuthValidator;
-import net.oauth.SimpleOAuthValidator;
 import net.oauth.OAuthException;
 
 import com.spvsoftwareproducts.blackboard.utils.B2Context;
 import org.oscelot.blackboard.lti.Tool;
 import org.oscelot.blackboard.lti.Constants;
+import org.oscelot.blackboard.lti.NonceValidator;
 import org.oscelot.blackboard.lti.Utils;
 
-public class Controller extends HttpServlet implements SingleThreadModel {
+public class Controller extends HttpServlet {
 
     private static final long serialVersionUID = 4319979518963733963L;
 
-    private B2Context b2Context = null;
-    private Response response = null;
-    private List<String> servicesData = null;
-    private Tool tool = null;
-
     protected void processRequest(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 
         boolean ok;
-        this.b2Context = new B2Context(request);
-        this.response = new Response();
+        ServiceRequest serviceRequest = new ServiceRequest(new B2Context(request));
+        Response serviceResponse = serviceRequest.getResponse();
 
-        this.response.setProviderRef("");
-        this.response.setConsumerRef(String.valueOf(System.currentTimeMillis()));
+        serviceResponse.setProviderRef("");
+        serviceResponse.setConsumerRef(String.valueOf(System.currentTimeMillis()));
         String description = "ext.codeminor.request";
         OAuthMessage message = OAuthServlet.getMessage(request, null);
         Map<String, String> authHeaders = Utils.getAuthorizationHeaders(message);
@@ -75,44 +69,57 @@ public class Controller extends HttpServlet implements SingleThreadModel {
         String actionName = "";
         Document xmlDoc;
         Element xmlBody = null;
+        List<Element> records = null;
         xmlDoc = Utils.getXMLDoc(xml);
+        serviceRequest.setXmlDoc(xmlDoc);
         ok = xmlDoc != null;
         if (ok) {
             Element el = Utils.getXmlChild(xmlDoc.getRootElement(), "imsx_POXBody");
             xmlBody = Utils.getXmlChild(el, null);
+            serviceRequest.setXmlBody(xmlBody);
             ok = xmlBody != null;
+            if (ok && (el.getChildren().size() > 1)) {
+                records = (List<Element>) el.getChildren();
+            }
         }
         if (ok) {
             actionName = xmlBody.getName();
             if (actionName.endsWith("Request")) {
                 actionName = actionName.substring(0, actionName.length() - 7);
             }
-            this.response.setProviderRef(Utils.getXmlChildValue(xmlDoc.getRootElement(), "imsx_messageIdentifier"));
+            if (records != null) {
+                actionName = "";
+            }
+            serviceResponse.setProviderRef(Utils.getXmlChildValue(xmlDoc.getRootElement(), "imsx_messageIdentifier"));
         }
-        this.response.setAction(actionName);
+        serviceResponse.setAction(actionName);
         Action action = null;
+        Outcome batch = null;
         String paramName = null;
         if (ok) {
-            if (actionName.equals(Constants.SVC_OUTCOME_READ)
+            if (records != null) {
+                batch = new Outcome();
+                paramName = "sourcedId";
+            } else if (actionName.equals(Constants.SVC_OUTCOME_READ)
                     || actionName.equals(Constants.SVC_OUTCOME_WRITE)
                     || actionName.equals(Constants.SVC_OUTCOME_DELETE)) {
                 action = new Outcome();
                 paramName = "sourcedId";
             }
-            ok = (action != null);
+            ok = (action != null) || (batch != null);
             if (!ok) {
-                this.response.setCodeMajor("unsupported");
+                serviceResponse.setCodeMajor("unsupported");
                 description = "ext.codeminor.action";
             }
         }
         if (ok) {
-            ok = getServicesData(consumerKey, Utils.getXmlChildValue(xmlBody, paramName));
+            ok = getServicesData(serviceRequest, consumerKey, Utils.getXmlChildValue(xmlBody, paramName));
             if (!ok) {
                 description = "ext.codeminor.security";
             }
         }
         if (ok) {
-            ok = checkSignature(message);
+            ok = checkSignature(serviceRequest.getB2Context(), serviceRequest.getTool(), message);
             if (!ok) {
                 description = "ext.codeminor.signature";
             }
@@ -123,15 +130,21 @@ public class Controller extends HttpServlet implements SingleThreadModel {
                 description = "svc.codeminor.bodyhash";
             }
         }
-        this.response.setDescription(this.b2Context.getResourceString(description));
+        serviceResponse.setDescription(serviceRequest.getB2Context().getResourceString(description));
         if (ok) {
-            ok = action.execute(actionName, this.b2Context, this.tool, xmlBody, this.servicesData, this.response);
+            if (records != null) {
+                ok = batch.executeBatch(serviceRequest.getB2Context(), serviceRequest.getTool(), records,
+                        getBatchServicesData(serviceRequest, records), serviceResponse);
+            } else {
+                ok = action.execute(actionName, serviceRequest.getB2Context(), serviceRequest.getTool(), xmlBody,
+                        serviceRequest.getServicesData(), serviceResponse);
+            }
         }
 
-        this.response.setOk(ok);
+        serviceResponse.setOk(ok);
         response.setContentType("text/xml");
         response.setCharacterEncoding("UTF-8");
-        response.getWriter().print(this.response.toXML());
+        response.getWriter().print(serviceResponse.toXML());
     }
 
     @Override
@@ -149,7 +162,7 @@ public class Controller extends HttpServlet implements SingleThreadModel {
         return "Extension services";
     }
 
-    private boolean getServicesData(String key, String param) {
+    private boolean getServicesData(ServiceRequest serviceRequest, String key, String param) {
 
         String[] data = param.split(Constants.HASH_SEPARATOR);
 
@@ -174,27 +187,26 @@ public class Controller extends HttpServlet implements SingleThreadModel {
                 B2Context.log(true, "getServicesData - no courseId: " + param);
             }
         }
+        Tool tool = null;
         if (ok) {
-            this.b2Context.setCourseId(courseId);
-            this.b2Context.setContentId(contentId);
-            this.b2Context.setGroupId(groupId);
-            Utils.checkInheritSettings(this.b2Context);
-            this.tool = Utils.getTool(this.b2Context, toolId);
-            ok = key.equals(this.tool.getLaunchGUID());
+            B2Context b2Context = serviceRequest.getB2Context();
+            b2Context.setCourseId(courseId);
+            b2Context.setContentId(contentId);
+            b2Context.setGroupId(groupId);
+            Utils.checkInheritSettings(b2Context);
+            tool = Utils.getTool(b2Context, toolId);
+            serviceRequest.setTool(tool);
+            ok = key.equals(tool.getLaunchGUID());
             if (!ok) {
                 B2Context.log(true, "getServicesData - invalid consumer key: " + key + "; expected " + tool.getLaunchGUID());
             }
         }
         if (ok) {
-            this.servicesData = new ArrayList<String>();
-            StringBuilder hash = new StringBuilder();
-            for (int i = 1; i < data.length; i++) {
-                String item = Utils.decodeHash(data[i]);
-                this.servicesData.add(item);
-                hash.append(item);
-            }
-            ok = Utils.getHash(hash.toString(), this.tool.getSendUUID()).equals(Utils.decodeHash(data[0]));
-            if (!ok) {
+            List<String> servicesData = getHashedData(tool, data);
+            ok = servicesData != null;
+            if (ok) {
+                serviceRequest.setServicesData(servicesData);
+            } else {
                 B2Context.log(true, "getServicesData - invalid hash");
             }
         }
@@ -203,16 +215,61 @@ public class Controller extends HttpServlet implements SingleThreadModel {
 
     }
 
-    private boolean checkSignature(OAuthMessage message) {
+    private List<List<String>> getBatchServicesData(ServiceRequest serviceRequest, List<Element> records) {
+
+        List<List<String>> batchData = new ArrayList<List<String>>();
+        List<String> servicesData = serviceRequest.getServicesData();
+        batchData.add(servicesData);
+        for (int i = 1; i < records.size(); i++) {
+            List<String> recordData = null;
+            String param = Utils.getXmlChildValue(records.get(i), "sourcedId");
+            if (param != null) {
+                String[] data = param.split(Constants.HASH_SEPARATOR);
+                if (data.length >= 4) {
+                    recordData = getHashedData(serviceRequest.getTool(), data);
+                }
+            }
+// Each record must be for the same course, content item and tool as the first
+            if ((recordData != null) && !recordData.subList(0, 3).equals(servicesData.subList(0, 3))) {
+                recordData = null;
+            }
+            if (recordData == null) {
+                B2Context.log(true, "getBatchServicesData - invalid sourcedId: " + param);
+            }
+            batchData.add(recordData);
+        }
+
+        return batchData;
+
+    }
+
+    private List<String> getHashedData(Tool tool, String[] data) {
+
+        List<String> servicesData = new ArrayList<String>();
+        StringBuilder hash = new StringBuilder();
+        for (int i = 1; i < data.length; i++) {
+            String item = Utils.decodeHash(data[i]);
+            servicesData.add(item);
+            hash.append(item);
+        }
+        if (!Utils.getHash(hash.toString(), tool.getSendUUID()).equals(Utils.decodeHash(data[0]))) {
+            servicesData = null;
+        }
+
+        return servicesData;
+
+    }
+
+    private boolean checkSignature(B2Context b2Context, Tool tool, OAuthMessage message) {
 
         boolean ok = true;
 
-        String consumerKey = this.tool.getLaunchGUID();
-        String secret = this.tool.getLaunchSecret();
+        String consumerKey = tool.getLaunchGUID();
+        String secret = tool.getLaunchSecret();
 
         OAuthConsumer oAuthConsumer = new OAuthConsumer(Constants.OAUTH_CALLBACK, consumerKey, secret, null);
         OAuthAccessor oAuthAccessor = new OAuthAccessor(oAuthConsumer);
-        OAuthValidator validator = new SimpleOAuthValidator();
+        OAuthValidator validator = new NonceValidator(b2Context);
         try {
             message.validateMessage(oAuthAccessor, validator);
         } catch (IOException e) {
@@ -21,18 +21,17 @@
 package org.oscelot.blackboard.basiclti.services;
 
 import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
 
 import org.jdom.Element;
 
 import blackboard.platform.persistence.PersistenceServiceFactory;
 import blackboard.persist.BbPersistenceManager;
+import blackboard.persist.Id;
 import blackboard.persist.KeyNotFoundException;
 import blackboard.persist.PersistenceException;
 import blackboard.persist.user.UserDbLoader;
-import blackboard.persist.user.UserSearch;
-import blackboard.persist.user.UserSearch.SearchKey;
-import blackboard.persist.user.UserSearch.SearchParameter;
-import blackboard.persist.SearchOperator;
 import blackboard.data.user.User;
 import blackboard.persist.course.CourseMembershipDbLoader;
 import blackboard.data.course.CourseMembership;
@@ -45,9 +44,15 @@ import org.oscelot.blackboard.lti.Tool;
 import org.oscelot.blackboard.lti.Utils;
 import org.oscelot.blackboard.lti.Gradebook;
 import org.oscelot.blackboard.lti.Constants;
+import org.oscelot.blackboard.lti.UserCache;
 
 public class Outcome implements Action {
 
+    private Lineitem lineitem = null;
+    private Map<String, User> users = null;
+    private Map<Id, CourseMembership> memberships = null;
+    private Map<Id, Score> scores = null;
+
     public Outcome() {
     }
 
@@ -63,31 +68,11 @@ public class Outcome implements Action {
         if (!ok) {
             description = b2Context.getResourceString("ext.codeminor.notavailable");
         }
-        BbPersistenceManager bbPm = PersistenceServiceFactory.getInstance().getDbPersistenceManager();
 // Load user object
         User user = null;
         if (ok) {
-            String userId = serviceData.get(3);
             try {
-                UserDbLoader userdbloader = (UserDbLoader) bbPm.getLoader(UserDbLoader.TYPE);
-                String userIdType = tool.getUserIdType();
-                if (userIdType.equals(Constants.DATA_USERNAME)) {
-                    user = userdbloader.loadByUserName(userId);
-                } else if (userIdType.equals(Constants.DATA_PRIMARYKEY)) {
-                    user = userdbloader.loadById(bbPm.generateId(User.DATA_TYPE, userId));
-                } else if (userIdType.equals(Constants.DATA_UUID)) {
-                    user = userdbloader.loadByUuid(userId);
-                } else if (userIdType.equals(Constants.DATA_STUDENTID)) {
-                    SearchParameter sp = new SearchParameter(SearchKey.StudentId, userId, SearchOperator.Equals);
-                    UserSearch us = new UserSearch();
-                    us.addParameter(sp);
-                    List<User> users = userdbloader.loadByUserSearch(us);
-                    if (users.size() > 0) {
-                        user = users.get(0);
-                    }
-                } else if (userIdType.equals(Constants.DATA_BATCHUID)) {
-                    user = userdbloader.loadByBatchUid(userId);
-                }
+                user = UserCache.getUser(tool.getUserIdType(), serviceData.get(3));
                 ok = (user != null);
                 if (ok) {
                     ok = user.getIsAvailable();
@@ -101,11 +86,10 @@ public class Outcome implements Action {
             }
         }
 // Load enrolment
+        CourseMembership coursemembership = null;
         if (ok) {
-            CourseMembership coursemembership;
             try {
-                CourseMembershipDbLoader coursemembershipdbloader = (CourseMembershipDbLoader) bbPm.getLoader(CourseMembershipDbLoader.TYPE);
-                coursemembership = coursemembershipdbloader.loadByCourseAndUserId(b2Context.getCourseId(), user.getId());
+                coursemembership = UserCache.getMembership(b2Context.getCourseId(), user.getId());
                 ok = coursemembership.getRole().equals(CourseMembership.Role.STUDENT)
                         && coursemembership.getIsAvailable();
                 if (!ok) {
@@ -128,7 +112,7 @@ public class Outcome implements Action {
             if (actionName.equals(Constants.SVC_OUTCOME_WRITE)) {
                 ok = ((value != null) && (value.length() > 0));
                 if (ok) {
-                    ok = Gradebook.updateGradebook(user, lineitem, Constants.DECIMAL_RESULT_TYPE, value);
+                    ok = Gradebook.updateGradebook(coursemembership, lineitem, Constants.DECIMAL_RESULT_TYPE, value);
                     if (ok) {
                         description = String.format(b2Context.getResourceString("svc.codeminor.outcome.replaced"),
                                 resultSourcedId, value);
@@ -139,7 +123,7 @@ public class Outcome implements Action {
                     description = b2Context.getResourceString("ext.codeminor.outcomevalue");
                 }
             } else if (actionName.equals(Constants.SVC_OUTCOME_DELETE)) {
-                ok = Gradebook.updateGradebook(user, lineitem, Constants.DECIMAL_RESULT_TYPE, "");
+                ok = Gradebook.updateGradebook(coursemembership, lineitem, Constants.DECIMAL_RESULT_TYPE, "");
                 if (ok) {
                     description = b2Context.getResourceString("svc.codeminor.outcome.deleted");
                 } else {
@@ -147,37 +131,164 @@ public class Outcome implements Action {
                     description = b2Context.getResourceString("ext.codeminor.system");
                 }
             } else if (actionName.equals(Constants.SVC_OUTCOME_READ)) {
-                Score score = Gradebook.getScore(lineitem, user.getId(), false);
-                if (score != null) {
-                    value = score.getGrade();
-                    if (score.getOutcome().getGradebookStatus().equals(GradebookStatus.NEEDSGRADING)) {
-                        value = "";
-                    } else if (value.length() > 0) {
-                        float max = lineitem.getPointsPossible();
-                        if (max == 0.0f) {
-                            max = 1.0f;
-                        }
-                        Float fValue = Utils.stringToFloat(value);
-                        ok = fValue != null;
-                        if (!ok) {
-                            description = b2Context.getResourceString("svc.codeminor.outcomevalue");
-                        } else if (max != 1.0f) {
-                            value = Utils.floatToString(fValue / max);
-                        }
+                Score score = Gradebook.getScore(lineitem, coursemembership, false);
+                value = getResultValue(lineitem, score);
+                ok = value != null;
+                if (ok) {
+                    description = b2Context.getResourceString("svc.codeminor.outcome.read");
+                    response.setData(getResultXML(value));
+                } else {
+                    description = b2Context.getResourceString("svc.codeminor.outcomevalue");
+                }
+            } else {
+                ok = false;
+                response.setCodeMajor("unsupported");
+                description = b2Context.getResourceString("ext.codeminor.action");
+            }
+        }
+
+        response.setDescription(description);
+
+        return ok;
+
+    }
+
+    /**
+     * Processes several outcome records received in a single request.
+     * <p>
+     * The gradebook column is resolved once, and the users, course memberships and
+     * scores for the course are each loaded in a single query, before the records
+     * are processed in order.  A response record is added for each request record;
+     * the request is only reported as successful if every record succeeds.
+     *
+     * @param b2Context    the B2Context object (with the course context of the records)
+     * @param tool         the tool sending the request
+     * @param records      the request records
+     * @param servicesData the data from the sourcedId of each record (<code>null</code> for a record which failed the security check)
+     * @param response     the response
+     *
+     * @return <code>true</code> if all the records were processed successfully
+     */
+    public boolean executeBatch(B2Context b2Context, Tool tool, List<Element> records,
+            List<List<String>> servicesData, Response response) {
+
+        boolean allowed = tool.getSendUserId().equals(Constants.DATA_MANDATORY);
+        if (allowed) {
+            loadCourse(b2Context, tool);
+        }
+        int processed = 0;
+        Element record;
+        for (int i = 0; i < records.size(); i++) {
+            record = records.get(i);
+            Response recordResponse = new Response();
+            String actionName = record.getName();
+            if (actionName.endsWith("Request")) {
+                actionName = actionName.substring(0, actionName.length() - 7);
+            }
+            recordResponse.setAction(actionName);
+            String resultSourcedId = Utils.getXmlChildValue(record, "sourcedId");
+            if (resultSourcedId == null) {
+                resultSourcedId = "";
+            }
+            recordResponse.setProviderRef(resultSourcedId);
+            boolean ok;
+            if (servicesData.get(i) == null) {
+                ok = false;
+                recordResponse.setDescription(b2Context.getResourceString("ext.codeminor.security"));
+            } else if (!allowed) {
+                ok = false;
+                recordResponse.setDescription(b2Context.getResourceString("ext.codeminor.notavailable"));
+            } else {
+                ok = executeRecord(actionName, b2Context, tool, record, servicesData.get(i), recordResponse);
+            }
+            recordResponse.setOk(ok);
+            response.addRecord(recordResponse);
+            if (ok) {
+                processed++;
+            }
+        }
+        response.setDescription(String.format(b2Context.getResourceString("svc.codeminor.outcome.batch"),
+                processed, records.size()));
+
+        return processed == records.size();
+
+    }
+
+    private boolean executeRecord(String actionName, B2Context b2Context, Tool tool,
+            Element record, List<String> serviceData, Response response) {
+
+        String resultSourcedId = Utils.getXmlChildValue(record, "sourcedId");
+
+        String description = b2Context.getResourceString("ext.codeminor.success");
+
+        boolean ok = (this.lineitem != null) && (this.users != null);
+        if (!ok) {
+            description = b2Context.getResourceString("ext.codeminor.system");
+        }
+// Find user object
+        User user = null;
+        if (ok) {
+            String userId = serviceData.get(3);
+            user = this.users.get(userId);
+            if (user == null) {
+                try {
+                    user = UserCache.getUser(tool.getUserIdType(), userId);
+                } catch (PersistenceException e) {
+                    user = null;
+                }
+            }
+            ok = (user != null) && user.getIsAvailable();
+            if (!ok) {
+                description = b2Context.getResourceString("ext.codeminor.user");
+            }
+        }
+// Find enrolment
+        CourseMembership coursemembership = null;
+        if (ok) {
+            coursemembership = this.memberships.get(user.getId());
+            ok = (coursemembership != null) && coursemembership.getRole().equals(CourseMembership.Role.STUDENT)
+                    && coursemembership.getIsAvailable();
+            if (!ok) {
+                description = b2Context.getResourceString("ext.codeminor.role");
+            }
+        }
+// Perform requested action
+        if (ok) {
+            Score score = this.scores.get(coursemembership.getId());
+            String value = Utils.getXmlChildValue(record, "textString");
+            if (actionName.equals(Constants.SVC_OUTCOME_WRITE)) {
+                ok = ((value != null) && (value.length() > 0));
+                if (ok) {
+                    if (score == null) {
+                        score = Gradebook.createScore(this.lineitem, coursemembership.getId());
                     }
+                    ok = Gradebook.updateScore(this.lineitem, score, Constants.DECIMAL_RESULT_TYPE, value);
+                    if (ok) {
+                        this.scores.put(coursemembership.getId(), score);
+                        description = String.format(b2Context.getResourceString("svc.codeminor.outcome.replaced"),
+                                resultSourcedId, value);
+                    } else {
+                        description = b2Context.getResourceString("ext.codeminor.system");
+                    }
+                } else {
+                    description = b2Context.getResourceString("ext.codeminor.outcomevalue");
+                }
+            } else if (actionName.equals(Constants.SVC_OUTCOME_DELETE)) {
+                ok = Gradebook.updateScore(this.lineitem, score, Constants.DECIMAL_RESULT_TYPE, "");
+                if (ok) {
+                    description = b2Context.getResourceString("svc.codeminor.outcome.deleted");
                 } else {
-                    value = "";
+                    B2Context.log(true, "Error in Gradebook.updateScore");
+                    description = b2Context.getResourceString("ext.codeminor.system");
                 }
+            } else if (actionName.equals(Constants.SVC_OUTCOME_READ)) {
+                value = getResultValue(this.lineitem, score);
+                ok = value != null;
                 if (ok) {
                     description = b2Context.getResourceString("svc.codeminor.outcome.read");
-                    StringBuilder xml = new StringBuilder();
-                    xml.append("      <result>\n");
-                    xml.append("        <resultScore>\n");
-                    xml.append("          <language>en</language>\n");
-                    xml.append("          <textString>").append(value).append("</textString>\n");
-                    xml.append("        </resultScore>\n");
-                    xml.append("      </result>\n");
-                    response.setData(xml.toString());
+                    response.setData(getResultXML(value));
+                } else {
+                    description = b2Context.getResourceString("svc.codeminor.outcomevalue");
                 }
             } else {
                 ok = false;
@@ -192,4 +303,95 @@ public class Outcome implements Action {
 
     }
 
+    private void loadCourse(B2Context b2Context, Tool tool) {
+
+        this.lineitem = Gradebook.getColumn(b2Context, tool.getId(), tool.getName(),
+                Constants.DECIMAL_RESULT_TYPE, 100, false, false, null, true);
+        this.scores = Gradebook.getScores(this.lineitem);
+        BbPersistenceManager bbPm = PersistenceServiceFactory.getInstance().getDbPersistenceManager();
+        try {
+            CourseMembershipDbLoader coursemembershipdbloader = (CourseMembershipDbLoader) bbPm.getLoader(CourseMembershipDbLoader.TYPE);
+            List<CourseMembership> courseMemberships = coursemembershipdbloader.loadByCourseId(b2Context.getCourseId());
+            this.memberships = new HashMap<Id, CourseMembership>();
+            for (CourseMembership courseMembership : courseMemberships) {
+                this.memberships.put(courseMembership.getUserId(), courseMembership);
+            }
+            UserDbLoader userdbloader = (UserDbLoader) bbPm.getLoader(UserDbLoader.TYPE);
+            List<User> courseUsers = userdbloader.loadByCourseId(b2Context.getCourseId());
+            String userIdType = tool.getUserIdType();
+            this.users = new HashMap<String, User>();
+            String userId;
+            for (User user : courseUsers) {
+                userId = getUserId(user, userIdType);
+                if ((userId != null) && !this.users.containsKey(userId)) {
+                    this.users.put(userId, user);
+                }
+            }
+        } catch (PersistenceException e) {
+            B2Context.log(true, null, e);
+            this.users = null;
+        }
+
+    }
+
+    private static String getUserId(User user, String userIdType) {
+
+        String userId = null;
+        if (userIdType.equals(Constants.DATA_USERNAME)) {
+            userId = user.getUserName();
+        } else if (userIdType.equals(Constants.DATA_PRIMARYKEY)) {
+            userId = user.getId().toExternalString();
+        } else if (userIdType.equals(Constants.DATA_UUID)) {
+            userId = user.getUuid();
+        } else if (userIdType.equals(Constants.DATA_STUDENTID)) {
+            userId = user.getStudentId();
+        } else if (userIdType.equals(Constants.DATA_BATCHUID)) {
+            userId = user.getBatchUid();
+        }
+
+        return userId;
+
+    }
+
+    private static String getResultValue(Lineitem lineitem, Score score) {
+
+        String value;
+        if (score != null) {
+            value = score.getGrade();
+            if (score.getOutcome().getGradebookStatus().equals(GradebookStatus.NEEDSGRADING)) {
+                value = "";
+            } else if (value.length() > 0) {
+                float max = lineitem.getPointsPossible();
+                if (max == 0.0f) {
+                    max = 1.0f;
+                }
+                Float fValue = Utils.stringToFloat(value);
+                if (fValue == null) {
+                    value = null;
+                } else if (max != 1.0f) {
+                    value = Utils.floatToString(fValue / max);
+                }
+            }
+        } else {
+            value = "";
+        }
+
+        return value;
+
+    }
+
+    private static String getResultXML(String value) {
+
+        StringBuilder xml = new StringBuilder();
+        xml.append("      <result>\n");
+        xml.append("        <resultScore>\n");
+        xml.append("          <language>en</language>\n");
+        xml.append("          <textString>").append(value).append("</textString>\n");
+        xml.append("        </resultScore>\n");
+        xml.append("      </result>\n");
+
+        return xml.toString();
+
+    }
+
 }
@@ -20,6 +20,9 @@
  */
 package org.oscelot.blackboard.basiclti.services;
 
+import java.util.List;
+import java.util.ArrayList;
+
 import org.oscelot.blackboard.lti.Utils;
 
 public class Response {
@@ -31,6 +34,7 @@ public class Response {
     private String consumerRef = null;
     private String providerRef = null;
     private String data = null;
+    private List<Response> records = null;
 
     public Response() {
     }
@@ -83,6 +87,17 @@ public class Response {
         this.providerRef = providerRef;
     }
 
+    public List<Response> getRecords() {
+        return records;
+    }
+
+    public void addRecord(Response record) {
+        if (this.records == null) {
+            this.records = new ArrayList<Response>();
+        }
+        this.records.add(record);
+    }
+
     public boolean isOk() {
         return ok;
     }
@@ -120,7 +135,11 @@ public class Response {
         xml.append("    </imsx_POXResponseHeaderInfo>\n");
         xml.append("  </imsx_POXHeader>\n");
         xml.append("  <imsx_POXBody>\n");
-        if (this.data != null) {
+        if (this.records != null) {
+            for (Response record : this.records) {
+                xml.append(record.toRecordXML());
+            }
+        } else if (this.data != null) {
             xml.append("    <").append(this.action).append("Response>\n");
             xml.append(this.data);
             xml.append("    </").append(this.action).append("Response>\n");
@@ -134,4 +153,32 @@ public class Response {
 
     }
 
+    private String toRecordXML() {
+
+        if (ok) {
+            this.codeMajor = "success";
+        } else if (this.codeMajor == null) {
+            this.codeMajor = "failure";
+        }
+
+        StringBuilder xml = new StringBuilder();
+
+        xml.append("    <").append(this.action).append("Response>\n");
+        xml.append("      <imsx_statusInfo>\n");
+        xml.append("        <imsx_codeMajor>").append(Utils.htmlSpecialChars(this.codeMajor)).append("</imsx_codeMajor>\n");
+        xml.append("        <imsx_severity>status</imsx_severity>\n");
+        if (this.description != null) {
+            xml.append("        <imsx_description>").append(Utils.htmlSpecialChars(this.description)).append("</imsx_description>\n");
+        }
+        xml.append("        <imsx_messageRefIdentifier>").append(Utils.htmlSpecialChars(this.providerRef)).append("</imsx_messageRefIdentifier>\n");
+        xml.append("      </imsx_statusInfo>\n");
+        if (this.data != null) {
+            xml.append(this.data);
+        }
+        xml.append("    </").append(this.action).append("Response>\n");
+
+        return xml.toString();
+
+    }
+
 }
@@ -0,0 +1,91 @@
+/*
+    basiclti - Building Block to provide support for Basic LTI
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package org.oscelot.blackboard.basiclti.services;
+
+import java.util.List;
+
+import org.jdom.Document;
+import org.jdom.Element;
+
+import com.spvsoftwareproducts.blackboard.utils.B2Context;
+import org.oscelot.blackboard.lti.Tool;
+
+/**
+ * ServiceRequest holds the state of a single outcomes service request so that
+ * the servlet itself is stateless and requests can be processed concurrently.
+ */
+class ServiceRequest {
+
+    private final B2Context b2Context;
+    private final Response response;
+    private Document xmlDoc = null;
+    private Element xmlBody = null;
+    private Tool tool = null;
+    private List<String> servicesData = null;
+
+    ServiceRequest(B2Context b2Context) {
+
+        this.b2Context = b2Context;
+        this.response = new Response();
+
+    }
+
+    B2Context getB2Context() {
+        return this.b2Context;
+    }
+
+    Response getResponse() {
+        return this.response;
+    }
+
+    Document getXmlDoc() {
+        return this.xmlDoc;
+    }
+
+    void setXmlDoc(Document xmlDoc) {
+        this.xmlDoc = xmlDoc;
+    }
+
+    Element getXmlBody() {
+        return this.xmlBody;
+    }
+
+    void setXmlBody(Element xmlBody) {
+        this.xmlBody = xmlBody;
+    }
+
+    Tool getTool() {
+        return this.tool;
+    }
+
+    void setTool(Tool tool) {
+        this.tool = tool;
+    }
+
+    List<String> getServicesData() {
+        return this.servicesData;
+    }
+
+    void setServicesData(List<String> servicesData) {
+        this.servicesData = servicesData;
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+    basiclti - Building Block to provide support for Basic LTI
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package org.oscelot.blackboard.lti;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import blackboard.persist.Id;
+
+import com.spvsoftwareproducts.blackboard.utils.B2Context;
+
+/**
+ * ColumnCache holds the ID of the gradebook column resolved for each tool,
+ * content item and group in a course, so that outcomes requests do not need to
+ * re-read the course settings or search for the column by name each time.
+ * <p>
+ * The column is still loaded by its ID on each use, and an entry is discarded
+ * if the column no longer exists (for example, it has been deleted from the Grade
+ * Center).  The entries for a course are also discarded when its column settings
+ * are reset (after a course copy or import, or when a tool is deleted), by
+ * {@link Utils#checkColumn}, and once they are older than {@link #MAX_AGE} (to
+ * pick up changes saved on other application servers).
+ */
+public class ColumnCache {
+
+    private static final long MAX_AGE = 5L * 60L * 1000L;
+    private static final int CAPACITY = 1000;
+
+    private static final Map<Id, Map<String, ColumnEntry>> courses = new ConcurrentHashMap<Id, Map<String, ColumnEntry>>();
+
+    private ColumnCache() {
+    }
+
+    /**
+     * Gets the ID of the column previously resolved for a context.
+     *
+     * @param b2Context the B2Context object
+     * @param toolId    the tool ID
+     *
+     * @return the column ID (or <code>null</code> if not known)
+     */
+    static Id get(B2Context b2Context, String toolId) {
+
+        Id lineitemId = null;
+        Map<String, ColumnEntry> columns = getColumns(b2Context, false);
+        if (columns != null) {
+            String key = getKey(b2Context, toolId);
+            ColumnEntry entry = columns.get(key);
+            if (entry != null) {
+                if (System.currentTimeMillis() - entry.created > MAX_AGE) {
+                    columns.remove(key);
+                } else {
+                    lineitemId = entry.lineitemId;
+                }
+            }
+        }
+
+        return lineitemId;
+
+    }
+
+    /**
+     * Records the ID of the column resolved for a context.
+     *
+     * @param b2Context  the B2Context object
+     * @param toolId     the tool ID
+     * @param lineitemId the column ID
+     */
+    static void put(B2Context b2Context, String toolId, Id lineitemId) {
+
+        Map<String, ColumnEntry> columns = getColumns(b2Context, true);
+        if (columns != null) {
+            columns.put(getKey(b2Context, toolId), new ColumnEntry(lineitemId));
+        }
+
+    }
+
+    /**
+     * Discards the column ID recorded for a context.
+     *
+     * @param b2Context the B2Context object
+     * @param toolId    the tool ID
+     */
+    static void remove(B2Context b2Context, String toolId) {
+
+        Map<String, ColumnEntry> columns = getColumns(b2Context, false);
+        if (columns != null) {
+            columns.remove(getKey(b2Context, toolId));
+        }
+
+    }
+
+    /**
+     * Discards all the column IDs recorded for a course.
+     *
+     * @param courseId the course ID
+     */
+    public static void clear(Id courseId) {
+
+        if (courseId != null) {
+            courses.remove(courseId);
+        }
+
+    }
+
+    /**
+     * Discards all the column IDs recorded.
+     */
+    public static void clear() {
+
+        courses.clear();
+
+    }
+
+    private static Map<String, ColumnEntry> getColumns(B2Context b2Context, boolean doCreate) {
+
+        Map<String, ColumnEntry> columns = null;
+        Id courseId = b2Context.getCourseId();
+        if ((courseId != null) && courseId.isSet()) {
+            columns = courses.get(courseId);
+            if ((columns == null) && doCreate) {
+                if (courses.size() >= CAPACITY) {
+                    courses.clear();
+                }
+                columns = new ConcurrentHashMap<String, ColumnEntry>();
+                courses.put(courseId, columns);
+            }
+        }
+
+        return columns;
+
+    }
+
+    private static String getKey(B2Context b2Context, String toolId) {
+
+        StringBuilder key = new StringBuilder(toolId);
+        key.append(':');
+        if (b2Context.hasContentContext()) {
+            key.append(b2Context.getContentId().toExternalString());
+        }
+        key.append(':');
+        if (b2Context.hasGroupContext()) {
+            key.append(b2Context.getGroupIdAsString());
+        }
+
+        return key.toString();
+
+    }
+
+    /**
+     * ColumnEntry is a column ID and the time it was resolved.
+     */
+    private static class ColumnEntry {
+
+        private final Id lineitemId;
+        private final long created;
+
+        private ColumnEntry(Id lineitemId) {
+
+            this.lineitemId = lineitemId;
+            this.created = System.currentTimeMillis();
+
+        }
+
+    }
+
+}
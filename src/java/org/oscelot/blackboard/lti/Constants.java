@@ -152,6 +152,15 @@ public class Constants {
 // Cache setting parameter names
     public static final String CACHE_AGE_PARAMETER = "cacheage";
     public static final String CACHE_CAPACITY_PARAMETER = "cachecapacity";
+    public static final String CACHE_SIZE_PARAMETER = "cachesize";
+    public static final String CACHE_DEADLINE_PARAMETER = "cachedeadline";
+    public static final String CACHE_DEADLINE_OPTION = "5";
+    public static final String SPLASH_CACHE_AGE_PARAMETER = "splashcacheage";
+    public static final String SPLASH_CACHE_AGE_OPTION = "60";
+
+// HTTP connection pool setting parameter names
+    public static final String HTTP_MAX_HOST_CONNECTIONS_PARAMETER = "httpmaxhostconnections";
+    public static final String HTTP_MAX_CONNECTIONS_PARAMETER = "httpmaxconnections";
 
 // Mashup setting parameter name
     public static final String MASHUP_PARAMETER = "mashup";
@@ -285,6 +294,10 @@ public class Constants {
     public static final String EXT_SETTING_WRITE = "basic-lti-savesetting";
     public static final String EXT_SETTING_DELETE = "basic-lti-deletesetting";
 
+// Extension memberships paging parameter names
+    public static final String EXT_MEMBERSHIPS_OFFSET = "offset";
+    public static final String EXT_MEMBERSHIPS_LIMIT = "limit";
+
 // Module setting parameter names
     public static final String MODULE_TOOL_ID = "id";
     public static final String MODULE_CONTENT_URL = "url";
@@ -339,6 +352,8 @@ public class Constants {
     public static final String TIMEOUT_PARAMETER = "timeout";
     public static final String TIMEOUT_OPTION = "30";
     public static final int TIMEOUT = 30000;
+    public static final String OAUTH_SKEW_PARAMETER = "oauthskew";
+    public static final String OAUTH_SKEW_OPTION = "300";
     public static final String CACHE_OPTION = "0";
     public static final String TAB_PARAMETER_NAME = "tab_tab_group_id";
     public static final String COURSE_TAB_PARAMETER_NAME = "cmp_tab_id";
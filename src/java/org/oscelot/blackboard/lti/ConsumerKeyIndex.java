@@ -0,0 +1,120 @@
+/*
+    basiclti - Building Block to provide support for Basic LTI
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package org.oscelot.blackboard.lti;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
+import blackboard.platform.institutionalhierarchy.service.Node;
+
+import com.spvsoftwareproducts.blackboard.utils.B2Context;
+
+/**
+ * ConsumerKeyIndex maps an OAuth consumer key to the IDs of the system tools
+ * which use it, so that a signed service request which does not identify its
+ * tool only needs to be checked against the tools with a matching key.
+ * <p>
+ * The index is only used to narrow the search: each candidate is still
+ * checked against the tool list and consumer key for the current context
+ * before its signature is verified.  An index is rebuilt when the
+ * <code>tools.order</code> setting changes, when {@link #clear} is called
+ * after tools have been saved, or once it is older than {@link #MAX_AGE}.
+ */
+public class ConsumerKeyIndex {
+
+    private static final long MAX_AGE = 5L * 60L * 1000L;
+    private static final int CAPACITY = 50;
+
+    private static final Map<String, ConsumerKeyIndex> indexes = new ConcurrentHashMap<String, ConsumerKeyIndex>();
+
+    private final long created;
+    private final Map<String, List<String>> toolIds = new HashMap<String, List<String>>();
+
+    private ConsumerKeyIndex(B2Context b2Context, String toolOrder) {
+
+        this.created = System.currentTimeMillis();
+        String[] ids = toolOrder.split(",");
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i].length() > 0) {
+                Tool tool = new Tool(b2Context, ids[i]);
+                if (tool.getIsSystemTool()) {
+                    String consumerKey = tool.getLaunchGUID();
+                    if (consumerKey.length() > 0) {
+                        List<String> keyToolIds = this.toolIds.get(consumerKey);
+                        if (keyToolIds == null) {
+                            keyToolIds = new ArrayList<String>();
+                            this.toolIds.put(consumerKey, keyToolIds);
+                        }
+                        keyToolIds.add(ids[i]);
+                    }
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Gets the IDs of the system tools which use a consumer key.
+     *
+     * @param b2Context   the B2Context object
+     * @param consumerKey the consumer key
+     *
+     * @return the tool IDs (in tool order)
+     */
+    public static List<String> getToolIds(B2Context b2Context, String consumerKey) {
+
+        String toolOrder = b2Context.getSetting("tools.order", "");
+        String key = toolOrder;
+        Node node = b2Context.getNode();
+        if (node != null) {
+            key = node.getNodeId().toExternalString() + ":" + key;
+        }
+        ConsumerKeyIndex index = indexes.get(key);
+        if ((index == null) || (System.currentTimeMillis() - index.created > MAX_AGE)) {
+            index = new ConsumerKeyIndex(b2Context, toolOrder);
+            if (indexes.size() >= CAPACITY) {
+                indexes.clear();
+            }
+            indexes.put(key, index);
+        }
+        List<String> ids = index.toolIds.get(consumerKey);
+        if (ids == null) {
+            ids = Collections.emptyList();
+        }
+
+        return Collections.unmodifiableList(ids);
+
+    }
+
+    /**
+     * Discards all indexes so they are rebuilt on next use.
+     */
+    public static void clear() {
+
+        indexes.clear();
+
+    }
+
+}
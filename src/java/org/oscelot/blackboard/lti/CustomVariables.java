@@ -0,0 +1,351 @@
+/*
+    basiclti - Building Block to provide support for Basic LTI
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package org.oscelot.blackboard.lti;
+
+import java.util.Properties;
+
+import blackboard.data.course.Course;
+import blackboard.data.content.Content;
+import blackboard.data.user.User;
+import blackboard.platform.user.MyPlacesUtil;
+
+import com.spvsoftwareproducts.blackboard.utils.B2Context;
+
+/**
+ * CustomVariables is the registry of substitution variables supported in custom
+ * parameter values, and resolves their values for a launch.
+ * <p>
+ * A <code>null</code> value is returned for a variable which the tool is not
+ * permitted to receive, or which does not apply to the current context, so that
+ * it is passed to the tool unchanged.
+ */
+class CustomVariables {
+
+    static final String[] NAMES = {
+        "$User.id", "$User.username", "$User.org", "$User.image",
+        "$Person.sourcedId",
+        "$Person.name.full", "$Person.name.family", "$Person.name.given", "$Person.name.middle", "$Person.name.prefix",
+        "$Person.address.street1", "$Person.address.street2", "$Person.address.locality", "$Person.address.statepr",
+        "$Person.address.country", "$Person.address.postcode", "$Person.address.timezone",
+        "$Person.phone.mobile", "$Person.phone.primary", "$Person.phone.home", "$Person.phone.work",
+        "$Person.webaddress", "$Person.studentId", "$Person.email.primary", "$Person.email.personal",
+        "$Membership.role",
+        "$Context.id", "$Context.id.history", "$Context.org", "$Context.sourcedId", "$Context.dataSource",
+        "$Context.sourceSectionId", "$Context.title", "$Context.shortDescription", "$Context.longDescription",
+        "$Context.dept", "$Context.timeFrame.begin", "$Context.timeFrame.end",
+        "$ResourceLink.id", "$ResourceLink.id.history", "$ResourceLink.title", "$ResourceLink.description",
+        "$ResourceLink.timeFrame.begin", "$ResourceLink.timeFrame.end",
+        "$CourseSection.id", "$CourseSection.sourcedId", "$CourseSection.dataSource", "$CourseSection.sourceSectionId",
+        "$CourseSection.title", "$CourseSection.shortDescription", "$CourseSection.longDescription",
+        "$CourseSection.dept", "$CourseSection.timeFrame.begin", "$CourseSection.timeFrame.end",
+        "$Result.sourcedId", "$Result.pointsPossible"
+    };
+
+    private static final String COURSE_SECTION_CONTEXT_TYPE = "CourseSection";
+
+    private final B2Context b2Context;
+    private final Properties props;
+    private final Tool tool;
+    private String oldContextId = null;
+
+    CustomVariables(B2Context b2Context, Properties props, Tool tool) {
+
+        this.b2Context = b2Context;
+        this.props = props;
+        this.tool = tool;
+
+    }
+
+    /**
+     * Gets the value of a substitution variable.
+     *
+     * @param name the variable name (including the leading <code>$</code>)
+     *
+     * @return the value, or <code>null</code> if the variable should not be replaced
+     */
+    String getValue(String name) {
+
+        String value = null;
+        if (name.startsWith("$User.") || name.startsWith("$Person.")) {
+            User user = this.b2Context.getUser();
+            if (user != null) {
+                if (name.startsWith("$User.")) {
+                    value = getUserValue(name, user);
+                } else {
+                    value = getPersonValue(name, user);
+                }
+            }
+        } else if (name.equals("$Membership.role")) {
+            if (this.tool.getDoSendRoles()) {
+                value = emptyIfNull(this.props.getProperty("roles"));
+            }
+        } else if (name.startsWith("$Context.")) {
+            Course course = this.b2Context.getCourse();
+            if (course != null) {
+                value = getContextValue(name, course);
+            }
+        } else if (name.startsWith("$ResourceLink.")) {
+            value = getResourceLinkValue(name);
+        } else if (name.startsWith("$CourseSection.")) {
+            Course course = this.b2Context.getCourse();
+            if ((course != null) && COURSE_SECTION_CONTEXT_TYPE.equals(this.props.getProperty("context_type"))) {
+                value = getCourseSectionValue(name, course);
+            }
+        } else if (name.equals("$Result.sourcedId")) {
+            if (this.props.containsKey("lis_result_sourcedid")) {
+                value = this.props.getProperty("lis_result_sourcedid");
+            }
+        } else if (name.equals("$Result.pointsPossible")) {
+            if (this.props.containsKey("lis_outcome_service_url")) {
+                value = emptyIfNull(this.tool.getOutcomesPointsPossible());
+            }
+        }
+
+        return value;
+
+    }
+
+    private String getUserValue(String name, User user) {
+
+        String value = null;
+        if (name.equals("$User.image")) {
+            if (this.tool.getDoSendAvatar()) {
+                try {
+                    if (MyPlacesUtil.avatarsEnabled() && Utils.displayAvatar(user.getId())) {
+                        value = MyPlacesUtil.getAvatarImage(user.getId());
+                        if (value == null) {
+                            value = "";
+                        } else {
+                            value = this.b2Context.getServerUrl() + value;
+                        }
+                    }
+                } catch (Exception e) {
+                    value = null;
+                }
+            }
+        } else if (this.tool.getDoSendUserId()) {
+            if (name.equals("$User.id")) {
+                value = this.props.getProperty("user_id");
+            } else if (name.equals("$User.username")) {
+                value = user.getUserName();
+            } else if (name.equals("$User.org")) {
+                value = Utils.getOrg(user.getId(), false);
+            }
+            value = emptyIfNull(value);
+        }
+
+        return value;
+
+    }
+
+    private String getPersonValue(String name, User user) {
+
+        String value = null;
+        if (name.equals("$Person.sourcedId")) {
+            if (this.tool.getDoSendUserSourcedid()) {
+                value = emptyIfNull(user.getBatchUid());
+            }
+        } else if (name.startsWith("$Person.email.")) {
+            if (this.tool.getDoSendEmail()) {
+                value = emptyIfNull(user.getEmailAddress());
+            }
+        } else if (this.tool.getDoSendUsername()) {
+            if (name.equals("$Person.name.full")) {
+                value = (emptyIfNull(user.getGivenName()) + " " + emptyIfNull(user.getFamilyName())).trim();
+            } else if (name.equals("$Person.name.family")) {
+                value = user.getFamilyName();
+            } else if (name.equals("$Person.name.given")) {
+                value = user.getGivenName();
+            } else if (name.equals("$Person.name.middle")) {
+                value = user.getMiddleName();
+            } else if (name.equals("$Person.name.prefix")) {
+                value = user.getTitle();
+            } else if (name.equals("$Person.address.street1")) {
+                value = user.getStreet1();
+            } else if (name.equals("$Person.address.street2")) {
+                value = user.getStreet2();
+            } else if (name.equals("$Person.address.locality")) {
+                value = user.getCity();
+            } else if (name.equals("$Person.address.statepr")) {
+                value = user.getState();
+            } else if (name.equals("$Person.address.country")) {
+                value = user.getCountry();
+            } else if (name.equals("$Person.address.postcode")) {
+                value = user.getZipCode();
+            } else if (name.equals("$Person.address.timezone")) {
+                value = user.getLocale();
+            } else if (name.equals("$Person.phone.mobile")) {
+                value = user.getMobilePhone();
+            } else if (name.equals("$Person.phone.primary") || name.equals("$Person.phone.home")) {
+                value = user.getHomePhone1();
+            } else if (name.equals("$Person.phone.work")) {
+                value = user.getBusinessPhone1();
+            } else if (name.equals("$Person.webaddress")) {
+                value = user.getWebPage();
+            } else if (name.equals("$Person.studentId")) {
+                value = user.getStudentId();
+            }
+            value = emptyIfNull(value);
+        }
+
+        return value;
+
+    }
+
+    private String getContextValue(String name, Course course) {
+
+        String value = null;
+        if (name.equals("$Context.id") || name.equals("$Context.id.history") || name.equals("$Context.org")) {
+            if (this.tool.getDoSendContextId()) {
+                if (name.equals("$Context.id.history")) {
+                    value = getOldContextId();
+                } else if (name.equals("$Context.id")) {
+                    value = this.props.getProperty("context_id");
+                } else {
+                    value = Utils.getOrg(course.getId(), true);
+                }
+            }
+        } else if (COURSE_SECTION_CONTEXT_TYPE.equals(this.props.getProperty("context_type"))) {
+            value = getCourseValue(name.substring("$Context.".length()), course);
+        }
+
+        return value;
+
+    }
+
+    private String getCourseSectionValue(String name, Course course) {
+
+        String value;
+        if (name.equals("$CourseSection.id")) {
+            value = null;
+            if (this.tool.getDoSendContextId()) {
+                value = this.props.getProperty("context_id");
+            }
+        } else {
+            value = getCourseValue(name.substring("$CourseSection.".length()), course);
+        }
+
+        return value;
+
+    }
+
+    private String getCourseValue(String property, Course course) {
+
+        String value = null;
+        if (property.equals("sourcedId") || property.equals("dataSource") || property.equals("sourceSectionId")) {
+            if (this.tool.getDoSendContextSourcedid()) {
+                if (property.equals("sourcedId")) {
+                    value = course.getBatchUid();
+                } else if (property.equals("dataSource")) {
+                    value = course.getDataSourceId().toExternalString();
+                } else {
+                    value = course.getCourseId();
+                }
+                value = emptyIfNull(value);
+            }
+        } else if (property.equals("title")) {
+            value = emptyIfNull(course.getTitle());
+        } else if (property.equals("shortDescription") || property.equals("longDescription")) {
+            value = emptyIfNull(course.getDescription());
+        } else if (property.equals("dept")) {
+            value = Utils.getPrimaryNode(course.getId(), true);
+        } else if (property.equals("timeFrame.begin")) {
+            value = Utils.formatCalendar(course.getStartDate(), Constants.ISO_DATE_FORMAT);
+        } else if (property.equals("timeFrame.end")) {
+            value = Utils.formatCalendar(course.getEndDate(), Constants.ISO_DATE_FORMAT);
+        }
+
+        return value;
+
+    }
+
+    private String getResourceLinkValue(String name) {
+
+        String value = null;
+        if (name.equals("$ResourceLink.id") || name.equals("$ResourceLink.id.history")) {
+            if (this.props.containsKey("resource_link_id")) {
+                if (name.equals("$ResourceLink.id")) {
+                    value = this.props.getProperty("resource_link_id");
+                } else {
+                    value = getOldResourceId();
+                }
+            }
+        } else if (name.equals("$ResourceLink.title")) {
+            value = this.props.getProperty("resource_link_title");
+        } else if (name.equals("$ResourceLink.description")) {
+            value = this.props.getProperty("resource_link_description");
+        } else {
+            Content content = this.b2Context.getContent();
+            if (content != null) {
+                if (name.equals("$ResourceLink.timeFrame.begin")) {
+                    value = Utils.formatCalendar(content.getStartDate(), Constants.ISO_DATE_FORMAT);
+                } else if (name.equals("$ResourceLink.timeFrame.end")) {
+                    value = Utils.formatCalendar(content.getEndDate(), Constants.ISO_DATE_FORMAT);
+                }
+            }
+        }
+
+        return value;
+
+    }
+
+    private String getOldContextId() {
+
+        if (this.oldContextId == null) {
+            this.oldContextId = Utils.getOldContextId(this.b2Context, this.tool.getContextIdType());
+        }
+
+        return this.oldContextId;
+
+    }
+
+    private String getOldResourceId() {
+
+        String contentId = this.b2Context.getRequestParameter("content_id", "");
+        if (contentId.equals("@X@content.pk_string@X@")) {
+            contentId = "";
+        }
+        String idString = this.tool.getPrefix();
+        String oldResourceId = Utils.getOldResourceId(this.b2Context, getOldContextId(), contentId);
+        if ((idString != null) && (idString.length() > 0) && (oldResourceId.length() > 0)) {
+            String[] resources = oldResourceId.split(",");
+            StringBuilder ids = new StringBuilder();
+            for (int i = 0; i < resources.length; i++) {
+                ids.append(",").append(Utils.urlEncode(Utils.urlDecode(resources[i]) + "_" + idString));
+            }
+            oldResourceId = ids.substring(1);
+        }
+
+        return oldResourceId;
+
+    }
+
+    private static String emptyIfNull(String value) {
+
+        if (value == null) {
+            value = "";
+        }
+
+        return value;
+
+    }
+
+}
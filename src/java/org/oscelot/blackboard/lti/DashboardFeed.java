@@ -29,6 +29,17 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.jdom.Document;
 import org.jdom.Element;
@@ -45,13 +56,16 @@ import org.oscelot.blackboard.utils.StringCacheFile;
 
 import com.spvsoftwareproducts.blackboard.utils.B2Context;
 import java.io.IOException;
-import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.URI;
 import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.NameValuePair;
 import org.apache.commons.httpclient.methods.PostMethod;
 
 public class DashboardFeed {
 
+    private static final Map<String, Future<String>> refreshes = new ConcurrentHashMap<String, Future<String>>();
+    private static ThreadPoolExecutor refreshExecutor = null;
+
     private B2Context b2Context = null;
     private Module module = null;
     private String launchUrl = null;
@@ -105,13 +119,19 @@ public class DashboardFeed {
         if (hasContent) {
             StringCache stringCache = StringCacheFile.getInstance(
                     this.b2Context.getSetting(Constants.CACHE_AGE_PARAMETER),
-                    this.b2Context.getSetting(Constants.CACHE_CAPACITY_PARAMETER));
+                    this.b2Context.getSetting(Constants.CACHE_CAPACITY_PARAMETER),
+                    this.b2Context.getSetting(Constants.CACHE_SIZE_PARAMETER));
             String key = this.b2Context.getUser().getUserName() + "-" + this.tool.getId();
             String data = stringCache.getString(key);
             if (data == null) {
-                data = readUrlAsString(contentUrl);
-                stringCache.putString(key, data);
-            } else {
+                FeedRequest request = new FeedRequest(this.b2Context, this.tool, this.module, contentUrl);
+                data = stringCache.getString(key, true);
+                Future<String> refresh = refresh(stringCache, key, request);
+                if (data == null) {
+                    data = waitFor(refresh);
+                }
+            }
+            if (stringCache.getStringDate(key) != null) {
                 this.date = stringCache.getStringDate(key);
             }
             String contentType = this.b2Context.getSetting(false, true, Constants.MODULE_CONTENT_TYPE, "");
@@ -161,53 +181,120 @@ public class DashboardFeed {
 // Function to make a LTI launch request and return the response
     public String readUrlAsString(String urlString) {
 
-        String fileContent = "";
-        LtiMessage message = new DashboardMessage(this.b2Context, this.tool, this.module);
-        message.signParameters(urlString, message.tool.getLaunchGUID(), message.tool.getLaunchSecret(),
-                tool.getLaunchSignatureMethod());
+        return new FeedRequest(this.b2Context, this.tool, this.module, urlString).read();
 
-        int timeout;
-        try {
-            timeout = Integer.parseInt(this.b2Context.getSetting(Constants.TIMEOUT_PARAMETER) + "000");
-        } catch (NumberFormatException e) {
-            timeout = Constants.TIMEOUT;
-        }
-        HttpClient client = new HttpClient();
-        client.getHttpConnectionManager().getParams().setConnectionTimeout(timeout);
-        PostMethod httpPost = new PostMethod(urlString);
-        httpPost.addParameters(message.getHTTPParams());
-        try {
-            httpPost.setURI(new URI(urlString, false));
-            int resp = client.executeMethod(httpPost);
-            if (resp < 300) {
-                fileContent = httpPost.getResponseBodyAsString();
-            } else if (resp < 400) {
-                if (httpPost.getResponseHeader("Location") != null) {
-                    String url = httpPost.getResponseHeader("Location").getValue();
-                    if (!url.startsWith("http://") && !url.startsWith("https://")) {
-                        String host = httpPost.getURI().getHost();
-                        if (httpPost.getResponseHeader("Host") != null) {
-                            host = httpPost.getResponseHeader("Host").getValue();
-                        }
-                        url = httpPost.getURI().getScheme() + "://" + host + url;
-                    }
-                    Header[] cookies = httpPost.getResponseHeaders("Set-Cookie");
-                    String[] cookie;
-                    Map<String, String> headers = new HashMap<String, String>();
-                    for (int i = 0; i < cookies.length; i++) {
-                        cookie = cookies[i].getValue().split(";", 2);
-                        headers.put("Cookie", cookie[0].trim());
-                    }
-                    fileContent = Utils.readUrlAsString(this.b2Context, url, headers);
+    }
+
+// ---------------------------------------------------
+// Function to request a feed and save the response in the cache
+    private static String load(StringCache stringCache, String key, FeedRequest request) {
+
+        long start = System.currentTimeMillis();
+        String data = request.read();
+        stringCache.recordLoad(System.currentTimeMillis() - start);
+        stringCache.putString(key, data);
+
+        return data;
+
+    }
+
+// ---------------------------------------------------
+// Function to request a feed in the background, unless a request for it is already in progress
+    private static Future<String> refresh(final StringCache stringCache, final String key, final FeedRequest request) {
+
+        FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+
+            @Override
+            public String call() {
+
+                try {
+                    return load(stringCache, key, request);
+                } finally {
+                    refreshes.remove(key);
                 }
+
+            }
+
+        });
+        Future<String> refresh = refreshes.putIfAbsent(key, task);
+        if (refresh == null) {
+            refresh = task;
+            try {
+                getRefreshExecutor(stringCache).execute(task);
+            } catch (RejectedExecutionException e) {
+                refreshes.remove(key);
+                refresh = null;
+                B2Context.log(true, "Dashboard feed request queue full; request for " + key + " not queued");
             }
-        } catch (IOException e) {
-            B2Context.log(true, null, e);
-            fileContent = "";
         }
-        httpPost.releaseConnection();
 
-        return fileContent;
+        return refresh;
+
+    }
+
+// ---------------------------------------------------
+// Function to wait for a feed request to complete, up to the configured deadline
+    private String waitFor(Future<String> refresh) {
+
+        String data = "";
+        if (refresh != null) {
+            Integer deadline = Utils.stringToInteger(this.b2Context.getSetting(Constants.CACHE_DEADLINE_PARAMETER, Constants.CACHE_DEADLINE_OPTION));
+            if ((deadline == null) || (deadline <= 0)) {
+                deadline = Utils.stringToInteger(Constants.CACHE_DEADLINE_OPTION);
+            }
+            try {
+                data = refresh.get(deadline, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                data = "";
+            } catch (ExecutionException e) {
+                B2Context.log(true, null, e.getCause());
+                data = "";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                data = "";
+            }
+        }
+
+        return data;
+
+    }
+
+// ---------------------------------------------------
+// Function to get the pool used for feed requests, creating it from the system settings if needed
+    private static synchronized ThreadPoolExecutor getRefreshExecutor(StringCache stringCache) {
+
+        if (refreshExecutor == null) {
+            int threads = HttpTransport.getMaxHostConnections(new B2Context());
+            int queueSize = Math.max(stringCache.getCapacity(), threads);
+            refreshExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+
+                            Thread thread = new Thread(runnable, "basiclti-dashboard-refresh");
+                            thread.setDaemon(true);
+
+                            return thread;
+
+                        }
+
+                    });
+            refreshExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        return refreshExecutor;
+
+    }
+
+// ---------------------------------------------------
+// Function to stop the feed request pool once any queued refreshes are complete
+    public static synchronized void shutdown() {
+
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdown();
+            refreshExecutor = null;
+        }
 
     }
 
@@ -331,4 +418,67 @@ public class DashboardFeed {
 
     }
 
+    /**
+     * FeedRequest is a signed dashboard launch request which can be sent from any
+     * thread; it does not refer to the Learn request for which it was created.
+     */
+    private static class FeedRequest {
+
+        private final String urlString;
+        private final NameValuePair[] params;
+        private final int timeout;
+
+        private FeedRequest(B2Context b2Context, Tool tool, Module module, String urlString) {
+
+            LtiMessage message = new DashboardMessage(b2Context, tool, module);
+            message.signParameters(urlString, message.tool.getLaunchGUID(), message.tool.getLaunchSecret(),
+                    tool.getLaunchSignatureMethod());
+            this.urlString = urlString;
+            this.params = message.getHTTPParams();
+            this.timeout = HttpTransport.getTimeout(b2Context);
+
+        }
+
+        private String read() {
+
+            String fileContent = "";
+            PostMethod httpPost = new PostMethod(this.urlString);
+            httpPost.addParameters(this.params);
+            try {
+                httpPost.setURI(new URI(this.urlString, false));
+                int resp = HttpTransport.execute(httpPost, this.timeout);
+                if (resp < 300) {
+                    fileContent = httpPost.getResponseBodyAsString();
+                } else if (resp < 400) {
+                    if (httpPost.getResponseHeader("Location") != null) {
+                        String url = httpPost.getResponseHeader("Location").getValue();
+                        if (!url.startsWith("http://") && !url.startsWith("https://")) {
+                            String host = httpPost.getURI().getHost();
+                            if (httpPost.getResponseHeader("Host") != null) {
+                                host = httpPost.getResponseHeader("Host").getValue();
+                            }
+                            url = httpPost.getURI().getScheme() + "://" + host + url;
+                        }
+                        Header[] cookies = httpPost.getResponseHeaders("Set-Cookie");
+                        String[] cookie;
+                        Map<String, String> headers = new HashMap<String, String>();
+                        for (int i = 0; i < cookies.length; i++) {
+                            cookie = cookies[i].getValue().split(";", 2);
+                            headers.put("Cookie", cookie[0].trim());
+                        }
+                        fileContent = Utils.readUrlAsString(null, url, headers, this.timeout);
+                    }
+                }
+            } catch (IOException e) {
+                B2Context.log(true, null, e);
+                fileContent = "";
+            }
+            httpPost.releaseConnection();
+
+            return fileContent;
+
+        }
+
+    }
+
 }
@@ -0,0 +1,221 @@
+/*
+    basiclti - Building Block to provide support for Basic LTI
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package org.oscelot.blackboard.lti;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import blackboard.platform.institutionalhierarchy.service.Node;
+
+import com.spvsoftwareproducts.blackboard.utils.B2Context;
+
+/**
+ * DomainIndex is a prebuilt lookup of the domain definitions used to match a
+ * tool URL to its domain.
+ * <p>
+ * Domains defined by a host name (with optional path) are held in a map keyed
+ * by host, so a URL is matched by looking up each suffix of its host, longest
+ * first; domains defined by a regular expression are compiled once.  An index
+ * is rebuilt when the <code>domains.order</code> setting changes, when
+ * {@link #clear} is called after a domain has been saved, or once it is older
+ * than {@link #MAX_AGE} (to pick up changes saved on other application servers).
+ */
+public class DomainIndex {
+
+    private static final long MAX_AGE = 5L * 60L * 1000L;
+    private static final int CAPACITY = 50;
+
+    private static final Map<String, DomainIndex> indexes = new ConcurrentHashMap<String, DomainIndex>();
+
+    private final long created;
+    private final List<Pattern> regExps = new ArrayList<Pattern>();
+    private final List<String> regExpIds = new ArrayList<String>();
+    private final Map<String, List<DomainEntry>> hosts = new HashMap<String, List<DomainEntry>>();
+
+    private DomainIndex(B2Context b2Context) {
+
+        this.created = System.currentTimeMillis();
+        ToolList domainList = new ToolList(b2Context, true, true);
+        List<Tool> domains = domainList.getList();
+        Tool aDomain;
+        int order = 0;
+        for (Iterator<Tool> iter = domains.iterator(); iter.hasNext();) {
+            aDomain = iter.next();
+            String name = aDomain.getName();
+            if (!Utils.isRegExp(name)) {
+                String[] parts = name.split("/", 2);
+                String path = null;
+                if (parts.length > 1) {
+                    path = parts[1];
+                }
+                List<DomainEntry> entries = this.hosts.get(parts[0]);
+                if (entries == null) {
+                    entries = new ArrayList<DomainEntry>();
+                    this.hosts.put(parts[0], entries);
+                }
+                entries.add(new DomainEntry(aDomain.getId(), path, order));
+            } else {
+                try {
+                    this.regExps.add(Pattern.compile(name));
+                    this.regExpIds.add(aDomain.getId());
+                } catch (PatternSyntaxException e) {
+                    B2Context.log(true, "Invalid domain regular expression: " + name);
+                }
+            }
+            order++;
+        }
+        for (Iterator<List<DomainEntry>> iter = this.hosts.values().iterator(); iter.hasNext();) {
+            Collections.sort(iter.next(), DomainEntry.BY_PATH_LENGTH);
+        }
+
+    }
+
+    /**
+     * Gets the index for the domains applicable to a context.
+     *
+     * @param b2Context the B2Context object
+     *
+     * @return the domain index
+     */
+    static DomainIndex getIndex(B2Context b2Context) {
+
+        String key = b2Context.getSetting("domains.order", "");
+        Node node = b2Context.getNode();
+        if (node != null) {
+            key = node.getNodeId().toExternalString() + ":" + key;
+        }
+        DomainIndex index = indexes.get(key);
+        if ((index == null) || (System.currentTimeMillis() - index.created > MAX_AGE)) {
+            index = new DomainIndex(b2Context);
+            if (indexes.size() >= CAPACITY) {
+                indexes.clear();
+            }
+            indexes.put(key, index);
+        }
+
+        return index;
+
+    }
+
+    /**
+     * Discards all indexes so they are rebuilt on next use.
+     */
+    public static void clear() {
+
+        indexes.clear();
+
+    }
+
+    /**
+     * Gets the ID of the domain which matches a URL.
+     * <p>
+     * The first regular expression (in domain order) which matches the URL is used;
+     * otherwise the domain with the longest matching host, and then the longest matching
+     * path, is chosen (the first in domain order when more than one is equally specific).
+     *
+     * @param urlString the URL being matched
+     * @param urlHost   the host name from the URL
+     * @param urlPath   the path from the URL
+     *
+     * @return the domain ID (or <code>null</code> if no domain matches)
+     */
+    String getDomainId(String urlString, String urlHost, String urlPath) {
+
+        String domainId = null;
+        for (int i = 0; (i < this.regExps.size()) && (domainId == null); i++) {
+            if (this.regExps.get(i).matcher(urlString).matches()) {
+                domainId = this.regExpIds.get(i);
+            }
+        }
+        for (int i = 0; (i <= urlHost.length()) && (domainId == null); i++) {
+            List<DomainEntry> entries = this.hosts.get(urlHost.substring(i));
+            if (entries != null) {
+                DomainEntry entry;
+                for (Iterator<DomainEntry> iter = entries.iterator(); iter.hasNext() && (domainId == null);) {
+                    entry = iter.next();
+                    if ((entry.path == null) || urlPath.startsWith("/" + entry.path)) {
+                        if ((i < urlHost.length()) || (entry.getPathLength() > 0)) {
+                            domainId = entry.id;
+                        }
+                    }
+                }
+            }
+        }
+
+        return domainId;
+
+    }
+
+    /**
+     * DomainEntry is a domain defined by a host name with an optional path.
+     */
+    private static class DomainEntry {
+
+        private static final Comparator<DomainEntry> BY_PATH_LENGTH = new Comparator<DomainEntry>() {
+
+            @Override
+            public int compare(DomainEntry entry1, DomainEntry entry2) {
+
+                int result = entry2.getPathLength() - entry1.getPathLength();
+                if (result == 0) {
+                    result = entry1.order - entry2.order;
+                }
+
+                return result;
+
+            }
+
+        };
+
+        private final String id;
+        private final String path;
+        private final int order;
+
+        private DomainEntry(String id, String path, int order) {
+
+            this.id = id;
+            this.path = path;
+            this.order = order;
+
+        }
+
+        private int getPathLength() {
+
+            int length = 0;
+            if (this.path != null) {
+                length = this.path.length();
+            }
+
+            return length;
+
+        }
+
+    }
+
+}
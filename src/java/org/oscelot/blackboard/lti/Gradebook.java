@@ -22,6 +22,10 @@ package org.oscelot.blackboard.lti;
 
 import java.util.Calendar;
 import java.util.Locale;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.regex.Pattern;
 
 import blackboard.base.BbList;
 import blackboard.platform.persistence.PersistenceServiceFactory;
@@ -53,14 +57,40 @@ import com.spvsoftwareproducts.blackboard.utils.B2Context;
 
 public class Gradebook {
 
+    private static final Pattern DECIMAL_PATTERN = Pattern.compile("[0]?\\.[0-9]*|1\\.0*");
+    private static final Pattern PERCENTAGE_PATTERN = Pattern.compile("[0-9]*\\.?[0-9]*[%]?");
+    private static final Pattern RATIO_PATTERN = Pattern.compile("[0-9]*\\.?[0-9]*/[0-9]+");
+    private static final Pattern LETTERAF_PATTERN = Pattern.compile("[A-Fa-f]");
+    private static final Pattern LETTERAFPLUS_PATTERN = Pattern.compile("[A-Fa-f][+-]?");
+
 // ---------------------------------------------------
 // Function to update a user's gradebook column linked to a content item with the current date
 // and time
     public static boolean updateGradebook(User user, Lineitem lineitem, String columnType, String columnValue) {
 
-        boolean ok = true;
-        BbPersistenceManager bbPm = PersistenceServiceFactory.getInstance().getDbPersistenceManager();
         Score score = getScore(lineitem, user.getId(), (columnValue.length() > 0));
+
+        return updateScore(lineitem, score, columnType, columnValue);
+
+    }
+
+// ---------------------------------------------------
+// Function to update a course member's gradebook column linked to a content item with the
+// current date and time
+    public static boolean updateGradebook(CourseMembership coursemembership, Lineitem lineitem, String columnType, String columnValue) {
+
+        Score score = getScore(lineitem, coursemembership, (columnValue.length() > 0));
+
+        return updateScore(lineitem, score, columnType, columnValue);
+
+    }
+
+// ---------------------------------------------------
+// Function to update a score in a gradebook column; a null score is only valid when the
+// score is being cleared.  The score is only saved if its grade has changed.
+    public static boolean updateScore(Lineitem lineitem, Score score, String columnType, String columnValue) {
+
+        boolean ok = true;
         if (score != null) {
             if (columnValue.length() > 0) {
                 columnValue = columnValue.trim();
@@ -70,7 +100,7 @@ public class Gradebook {
                     if (columnValue.length() == 1) {
                         ok = columnValue.equals("0") || columnValue.equals("1");
                     } else {
-                        ok = columnValue.matches("[0]?\\.[0-9]*") || columnValue.matches("1\\.0*");
+                        ok = DECIMAL_PATTERN.matcher(columnValue).matches();
                     }
                     ok = ok && (OutcomeDefinitionScale.SCORE.startsWith(type)
                             || OutcomeDefinitionScale.PERCENTAGE.startsWith(type)
@@ -83,7 +113,7 @@ public class Gradebook {
                         }
                     }
                 } else if (columnType.equals(Constants.PERCENTAGE_RESULT_TYPE)) {
-                    ok = columnValue.matches("[0-9]*\\.?[0-9]*[%]?")
+                    ok = PERCENTAGE_PATTERN.matcher(columnValue).matches()
                             && (OutcomeDefinitionScale.SCORE.startsWith(type)
                             || OutcomeDefinitionScale.PERCENTAGE.startsWith(type)
                             || OutcomeDefinitionScale.TEXT.startsWith(type));
@@ -98,25 +128,27 @@ public class Gradebook {
                         }
                     }
                 } else if (columnType.equals(Constants.RATIO_RESULT_TYPE)) {
-                    ok = columnValue.matches("[0-9]*\\.?[0-9]*/[0-9]+")
+                    ok = RATIO_PATTERN.matcher(columnValue).matches()
                             && (OutcomeDefinitionScale.SCORE.startsWith(type)
                             || OutcomeDefinitionScale.PERCENTAGE.startsWith(type)
                             || OutcomeDefinitionScale.TEXT.startsWith(type));
-                    int pos = columnValue.indexOf('/');
-                    String denominator = columnValue.substring(columnValue.indexOf('/') + 1);
-                    columnValue = columnValue.substring(0, pos);
-                    float pointsPossible = Utils.stringToFloat(denominator);
-                    if (Float.compare(pointsPossible, max) != 0) {
-                        float fValue = Utils.stringToFloat(columnValue);
-                        fValue = fValue / pointsPossible * max;
-                        columnValue = Utils.floatToString(fValue);
+                    if (ok) {
+                        int pos = columnValue.indexOf('/');
+                        String denominator = columnValue.substring(pos + 1);
+                        columnValue = columnValue.substring(0, pos);
+                        float pointsPossible = Utils.stringToFloat(denominator);
+                        if (Float.compare(pointsPossible, max) != 0) {
+                            float fValue = Utils.stringToFloat(columnValue);
+                            fValue = fValue / pointsPossible * max;
+                            columnValue = Utils.floatToString(fValue);
+                        }
                     }
                 } else if (columnType.equals(Constants.LETTERAF_RESULT_TYPE)) {
-                    ok = columnValue.matches("[A-Fa-f]")
+                    ok = LETTERAF_PATTERN.matcher(columnValue).matches()
                             && (OutcomeDefinitionScale.LETTER.startsWith(type)
                             || OutcomeDefinitionScale.TEXT.startsWith(type));
                 } else if (columnType.equals(Constants.LETTERAFPLUS_RESULT_TYPE)) {
-                    ok = columnValue.matches("[A-Fa-f][+-]?")
+                    ok = LETTERAFPLUS_PATTERN.matcher(columnValue).matches()
                             && (OutcomeDefinitionScale.LETTER.startsWith(type)
                             || OutcomeDefinitionScale.TEXT.startsWith(type));
                 } else if (columnType.equals(Constants.PASSFAIL_RESULT_TYPE)) {
@@ -125,27 +157,18 @@ public class Gradebook {
                             && OutcomeDefinitionScale.TEXT.startsWith(type);
                 }
             }
-            if (ok) {
-                score.setGrade(columnValue);
-                if (OutcomeDefinitionScale.LETTER.startsWith(lineitem.getOutcomeDefinition().getScale().getTitle())) {
-                    Float fValue = lineitem.getOutcomeDefinition().getScale().getScoreForGrade(columnValue, lineitem.getOutcomeDefinition());
-                    if (fValue != null) {
-                        score.getOutcome().getAttemptBasedOnAggregationModel().setScore(fValue.floatValue());
-                    }
-                }
+// Only save the score if it is new or its grade is changing
+            boolean isNew = (score.getId() == null) || !score.getId().isSet();
+            if (ok && (isNew || !columnValue.equals(score.getGrade()))) {
+                setGrade(lineitem, score, columnValue);
                 try {
                     score.validate();
+                    BbPersistenceManager bbPm = PersistenceServiceFactory.getInstance().getDbPersistenceManager();
                     ScoreDbPersister scoredbpersister = (ScoreDbPersister) bbPm.getPersister(ScoreDbPersister.TYPE);
                     scoredbpersister.persist(score);
-
-                    if (!score.getGrade().equals(columnValue)) {
-                        score.setGrade(columnValue);
-                        if (OutcomeDefinitionScale.LETTER.startsWith(lineitem.getOutcomeDefinition().getScale().getTitle())) {
-                            Float fValue = lineitem.getOutcomeDefinition().getScale().getScoreForGrade(columnValue, lineitem.getOutcomeDefinition());
-                            if (fValue != null) {
-                                score.getOutcome().getAttemptBasedOnAggregationModel().setScore(fValue.floatValue());
-                            }
-                        }
+// The grade of a newly inserted score may be replaced when it is first saved
+                    if (isNew && !columnValue.equals(score.getGrade())) {
+                        setGrade(lineitem, score, columnValue);
                         score.validate();
                         scoredbpersister.persist(score);
                     }
@@ -202,7 +225,17 @@ public class Gradebook {
             B2Context.log(true, null, e);
             ok = false;
         }
+// Use the column previously resolved for this context if it still exists
         if (ok) {
+            Id cachedId = ColumnCache.get(b2Context, toolId);
+            if (cachedId != null) {
+                lineitem = loadColumn(lineitemLoader, cachedId);
+                if (lineitem == null) {
+                    ColumnCache.remove(b2Context, toolId);
+                }
+            }
+        }
+        if (ok && (lineitem == null)) {
             String lineitemId0Str = b2Context.getSetting(false, true, toolSettingPrefix0 + Constants.TOOL_LINEITEM, "");
             String lineitemIdStr = b2Context.getSetting(false, true, toolSettingPrefix + Constants.TOOL_LINEITEM, lineitemId0Str);
             if (b2Context.hasContentContext()) {
@@ -336,6 +369,8 @@ public class Gradebook {
 
         if (!ok) {
             lineitem = null;
+        } else if (lineitem != null) {
+            ColumnCache.put(b2Context, toolId, lineitem.getId());
         }
 
         return lineitem;
@@ -364,27 +399,87 @@ public class Gradebook {
                 ok = false;
             }
             if (ok) {
-                try {
-                    ScoreDbLoader scoredbloader = (ScoreDbLoader) bbPm.getLoader(ScoreDbLoader.TYPE);
-                    score = scoredbloader.loadByCourseMembershipIdAndLineitemId(coursemembership.getId(), lineitem.getId());
-                } catch (KeyNotFoundException e) {
-                    score = null;
-                } catch (PersistenceException e) {
-                    score = null;
-                }
-                if ((score == null) && doCreate) {
-                    score = new Score();
-                    score.setCourseMembershipId(coursemembership.getId());
-                    score.setDateAdded();
-                    score.setLineitemId(lineitem.getId());
+                score = getScore(lineitem, coursemembership, doCreate);
+            }
+        }
+
+        return score;
+
+    }
+
+// ---------------------------------------------------
+// Function to retrieve a course member's score from a gradebook column
+    public static Score getScore(Lineitem lineitem, CourseMembership coursemembership, boolean doCreate) {
+
+        Score score = null;
+
+        if (lineitem != null) {
+            BbPersistenceManager bbPm = PersistenceServiceFactory.getInstance().getDbPersistenceManager();
+            try {
+                ScoreDbLoader scoredbloader = (ScoreDbLoader) bbPm.getLoader(ScoreDbLoader.TYPE);
+                score = scoredbloader.loadByCourseMembershipIdAndLineitemId(coursemembership.getId(), lineitem.getId());
+            } catch (KeyNotFoundException e) {
+                score = null;
+            } catch (PersistenceException e) {
+                score = null;
+            }
+            if ((score == null) && doCreate) {
+                score = createScore(lineitem, coursemembership.getId());
+            }
+        }
+
+        return score;
+
+    }
+
+// ---------------------------------------------------
+// Function to retrieve all the scores in a gradebook column, indexed by course membership ID
+    public static Map<Id, Score> getScores(Lineitem lineitem) {
+
+        Map<Id, Score> scores = new HashMap<Id, Score>();
+        if (lineitem != null) {
+            BbPersistenceManager bbPm = PersistenceServiceFactory.getInstance().getDbPersistenceManager();
+            try {
+                ScoreDbLoader scoredbloader = (ScoreDbLoader) bbPm.getLoader(ScoreDbLoader.TYPE);
+                List<Score> columnScores = scoredbloader.loadByLineitemId(lineitem.getId());
+                for (Score score : columnScores) {
+                    scores.put(score.getCourseMembershipId(), score);
                 }
+            } catch (KeyNotFoundException e) {
+            } catch (PersistenceException e) {
+                B2Context.log(true, null, e);
             }
         }
 
+        return scores;
+
+    }
+
+// ---------------------------------------------------
+// Function to create a new (unsaved) score for a course member in a gradebook column
+    public static Score createScore(Lineitem lineitem, Id courseMembershipId) {
+
+        Score score = new Score();
+        score.setCourseMembershipId(courseMembershipId);
+        score.setDateAdded();
+        score.setLineitemId(lineitem.getId());
+
         return score;
 
     }
 
+    private static void setGrade(Lineitem lineitem, Score score, String columnValue) {
+
+        score.setGrade(columnValue);
+        if (OutcomeDefinitionScale.LETTER.startsWith(lineitem.getOutcomeDefinition().getScale().getTitle())) {
+            Float fValue = lineitem.getOutcomeDefinition().getScale().getScoreForGrade(columnValue, lineitem.getOutcomeDefinition());
+            if (fValue != null) {
+                score.getOutcome().getAttemptBasedOnAggregationModel().setScore(fValue.floatValue());
+            }
+        }
+
+    }
+
     private static Lineitem loadColumn(BbPersistenceManager bbPm, LineitemDbLoader lineitemLoader, String lineitemId) {
 
         Lineitem lineitem;
@@ -0,0 +1,216 @@
+/*
+    basiclti - Building Block to provide support for Basic LTI
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package org.oscelot.blackboard.lti;
+
+import java.io.IOException;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+
+import com.spvsoftwareproducts.blackboard.utils.B2Context;
+
+/**
+ * HttpTransport provides a single HTTP client, backed by a pool of keep-alive
+ * connections, for all outbound requests made by the building block.
+ * <p>
+ * The pool is configured from the system settings when it is first used: the
+ * number of connections per host and in total are limited by the
+ * <code>httpmaxhostconnections</code> and <code>httpmaxconnections</code>
+ * settings, and the timeout setting is used both as the connect timeout and as
+ * the longest time a request waits for a free connection.  Connections idle for
+ * longer than a minute are closed.  The read timeout is set on each request.
+ * The pool is rebuilt after the system settings are saved (see
+ * {@link #shutdown()}) and closed when the web application is stopped (this
+ * class is registered as a listener in web.xml), along with the dashboard feed
+ * refresh pool.
+ */
+public class HttpTransport implements ServletContextListener {
+
+    private static final int MAX_HOST_CONNECTIONS = 20;
+    private static final int MAX_CONNECTIONS = 100;
+    private static final long IDLE_TIMEOUT = 60000L;
+    private static final long IDLE_CHECK_INTERVAL = 30000L;
+
+    private static MultiThreadedHttpConnectionManager connectionManager = null;
+    private static IdleConnectionTimeoutThread idleConnectionThread = null;
+    private static volatile HttpClient client = null;
+
+    public HttpTransport() {
+    }
+
+    /**
+     * Executes an HTTP request using a pooled connection.
+     * <p>
+     * The caller must call <code>releaseConnection</code> on the method once the
+     * response has been read so the connection can be reused.
+     *
+     * @param method    the request to execute
+     * @param timeout   the read timeout (in milliseconds)
+     *
+     * @return the HTTP status code of the response
+     *
+     * @throws IOException if the request fails, or no connection becomes free within the timeout
+     */
+    public static int execute(HttpMethod method, int timeout) throws IOException {
+
+        HttpClient httpClient = getClient();
+        method.getParams().setSoTimeout(timeout);
+
+        return httpClient.executeMethod(method);
+
+    }
+
+    /**
+     * Executes an HTTP request using a pooled connection and the configured timeout.
+     *
+     * @param b2Context the B2Context object
+     * @param method    the request to execute
+     *
+     * @return the HTTP status code of the response
+     *
+     * @throws IOException if the request fails, or no connection becomes free within the timeout
+     */
+    public static int execute(B2Context b2Context, HttpMethod method) throws IOException {
+
+        return execute(method, getTimeout(b2Context));
+
+    }
+
+    /**
+     * Gets the timeout for outbound requests from the timeout setting.
+     *
+     * @param b2Context the B2Context object
+     *
+     * @return the timeout (in milliseconds)
+     */
+    public static int getTimeout(B2Context b2Context) {
+
+        int timeout;
+        try {
+            timeout = Integer.parseInt(b2Context.getSetting(Constants.TIMEOUT_PARAMETER) + "000");
+        } catch (NumberFormatException e) {
+            timeout = Constants.TIMEOUT;
+        }
+
+        return timeout;
+
+    }
+
+    /**
+     * Gets the maximum number of connections to any one host from the
+     * <code>httpmaxhostconnections</code> setting.
+     *
+     * @param b2Context the B2Context object
+     *
+     * @return the maximum number of connections per host
+     */
+    public static int getMaxHostConnections(B2Context b2Context) {
+
+        return getIntSetting(b2Context, Constants.HTTP_MAX_HOST_CONNECTIONS_PARAMETER, MAX_HOST_CONNECTIONS);
+
+    }
+
+    /**
+     * Closes all pooled connections and stops the idle connection thread.
+     * <p>
+     * A new pool, using the current system settings, is created by the next request.
+     */
+    public static synchronized void shutdown() {
+
+        client = null;
+        if (idleConnectionThread != null) {
+            idleConnectionThread.shutdown();
+            idleConnectionThread = null;
+        }
+        if (connectionManager != null) {
+            connectionManager.shutdown();
+            connectionManager = null;
+        }
+
+    }
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+
+        DashboardFeed.shutdown();
+        shutdown();
+
+    }
+
+    private static HttpClient getClient() {
+
+        HttpClient httpClient = client;
+        if (httpClient == null) {
+            httpClient = createClient();
+        }
+
+        return httpClient;
+
+    }
+
+    private static synchronized HttpClient createClient() {
+
+        if (client == null) {
+            B2Context b2Context = new B2Context();
+            int timeout = getTimeout(b2Context);
+            connectionManager = new MultiThreadedHttpConnectionManager();
+            HttpConnectionManagerParams params = connectionManager.getParams();
+            params.setDefaultMaxConnectionsPerHost(getMaxHostConnections(b2Context));
+            params.setMaxTotalConnections(getIntSetting(b2Context, Constants.HTTP_MAX_CONNECTIONS_PARAMETER, MAX_CONNECTIONS));
+            params.setConnectionTimeout(timeout);
+            params.setStaleCheckingEnabled(true);
+            idleConnectionThread = new IdleConnectionTimeoutThread();
+            idleConnectionThread.setName("basiclti-idle-connections");
+            idleConnectionThread.addConnectionManager(connectionManager);
+            idleConnectionThread.setConnectionTimeout(IDLE_TIMEOUT);
+            idleConnectionThread.setTimeoutInterval(IDLE_CHECK_INTERVAL);
+            idleConnectionThread.start();
+            HttpClient httpClient = new HttpClient(connectionManager);
+            httpClient.getParams().setConnectionManagerTimeout(timeout);
+            client = httpClient;
+        }
+
+        return client;
+
+    }
+
+    private static int getIntSetting(B2Context b2Context, String name, int defaultValue) {
+
+        Integer value = Utils.stringToInteger(b2Context.getSetting(name, String.valueOf(defaultValue)));
+        if ((value == null) || (value <= 0)) {
+            value = defaultValue;
+        }
+
+        return value;
+
+    }
+
+}
@@ -79,6 +79,7 @@ public class LtiMessage {
     protected String settingPrefix = null;
     protected Properties props = null;
     private List<Map.Entry<String, String>> params = null;
+    private ServiceList serviceList = null;
 
     public LtiMessage(B2Context b2Context, Tool tool, Module module) {
 
@@ -531,7 +532,7 @@ public class LtiMessage {
         Service service;
         List<Resource> resources;
         Resource resource;
-        ServiceList services = new ServiceList(b2Context, false);
+        ServiceList services = getServiceList(b2Context);
         for (Iterator<Service> iter = services.getList().iterator(); iter.hasNext();) {
             service = iter.next();
             if (this.tool.getHasService(service.getId()).equals(Constants.DATA_TRUE)) {
@@ -565,7 +566,7 @@ public class LtiMessage {
                 paramName = item[0];
                 if (paramName.length() > 0) {
                     if (item.length > 1) {
-                        value = Utils.parseParameter(b2Context, this.props, this.tool, item[1]);
+                        value = Utils.parseParameter(b2Context, this.props, this.tool, item[1], getServiceList(b2Context));
                     } else {
                         value = "";
                     }
@@ -583,4 +584,14 @@ public class LtiMessage {
 
     }
 
+    private ServiceList getServiceList(B2Context b2Context) {
+
+        if (this.serviceList == null) {
+            this.serviceList = new ServiceList(b2Context, false);
+        }
+
+        return this.serviceList;
+
+    }
+
 }
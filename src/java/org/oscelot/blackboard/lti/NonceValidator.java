@@ -0,0 +1,169 @@
+/*
+    basiclti - Building Block to provide support for Basic LTI
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package org.oscelot.blackboard.lti;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.oauth.OAuth;
+import net.oauth.OAuthAccessor;
+import net.oauth.OAuthException;
+import net.oauth.OAuthMessage;
+import net.oauth.OAuthProblemException;
+import net.oauth.SimpleOAuthValidator;
+
+import com.spvsoftwareproducts.blackboard.utils.B2Context;
+
+/**
+ * NonceValidator checks the signature of an inbound OAuth request and rejects
+ * any request which repeats the consumer key, nonce and timestamp of one
+ * already accepted.
+ * <p>
+ * Requests with a timestamp differing from the current time by more than the
+ * <code>oauthskew</code> setting (in seconds) are rejected, so nonces only
+ * need to be remembered for that period.  They are held in buckets by
+ * timestamp (one per minute) and a bucket is discarded once all the
+ * timestamps it covers are outside the permitted window.  A nonce is only
+ * recorded once the signature has been verified.
+ */
+public class NonceValidator extends SimpleOAuthValidator {
+
+    static final long BUCKET_SECONDS = 60L;
+
+    private static final ConcurrentMap<Long, Map<String, Boolean>> buckets = new ConcurrentHashMap<Long, Map<String, Boolean>>();
+
+    /**
+     * Class constructor.
+     *
+     * @param b2Context the B2Context object
+     */
+    public NonceValidator(B2Context b2Context) {
+
+        super(1000L * getSkew(b2Context), Double.parseDouble(OAuth.VERSION_1_0));
+
+    }
+
+    @Override
+    public void validateMessage(OAuthMessage message, OAuthAccessor accessor)
+            throws OAuthException, IOException, URISyntaxException {
+
+        super.validateMessage(message, accessor);
+        long timestamp;
+        try {
+            timestamp = Long.parseLong(message.getParameter(OAuth.OAUTH_TIMESTAMP));
+        } catch (NumberFormatException e) {
+            throw new OAuthProblemException(OAuth.Problems.TIMESTAMP_REFUSED);
+        }
+        if (!isNewNonce(message.getConsumerKey(), message.getParameter(OAuth.OAUTH_NONCE), timestamp,
+                currentTimeMsec() / 1000L, this.timestampWindow / 1000L)) {
+            throw new OAuthProblemException(OAuth.Problems.INVALID_USED_NONCE);
+        }
+
+    }
+
+    /**
+     * Records a nonce.
+     * <p>
+     * All of the bucket bookkeeping is done here, using the times passed in
+     * rather than the clock, so that it can be checked without a signed message.
+     *
+     * @param consumerKey the consumer key of the request
+     * @param nonce       the nonce of the request
+     * @param timestamp   the timestamp of the request (in seconds)
+     * @param now         the current time (in seconds)
+     * @param window      the permitted difference between the timestamp and current time (in seconds)
+     *
+     * @return <code>true</code> if the nonce has not already been used with the consumer key and timestamp
+     */
+    static boolean isNewNonce(String consumerKey, String nonce, long timestamp, long now, long window) {
+
+        removeOldBuckets(now - window);
+        boolean ok = (nonce != null) && (Math.abs(now - timestamp) <= window);
+        if (ok) {
+            Long bucketId = timestamp / BUCKET_SECONDS;
+            Map<String, Boolean> bucket = buckets.get(bucketId);
+            if (bucket == null) {
+                bucket = new ConcurrentHashMap<String, Boolean>();
+                Map<String, Boolean> existing = buckets.putIfAbsent(bucketId, bucket);
+                if (existing != null) {
+                    bucket = existing;
+                }
+            }
+            String key = consumerKey + "&" + nonce + "&" + timestamp;
+            ok = (bucket.put(key, Boolean.TRUE) == null);
+        }
+
+        return ok;
+
+    }
+
+    /**
+     * Gets the number of nonces currently held.
+     *
+     * @return the number of nonces
+     */
+    static int getSize() {
+
+        int size = 0;
+        for (Iterator<Map<String, Boolean>> iter = buckets.values().iterator(); iter.hasNext();) {
+            size += iter.next().size();
+        }
+
+        return size;
+
+    }
+
+    /**
+     * Removes all recorded nonces.
+     */
+    static void clear() {
+
+        buckets.clear();
+
+    }
+
+    private static void removeOldBuckets(long oldest) {
+
+        long oldestBucket = oldest / BUCKET_SECONDS;
+        for (Iterator<Long> iter = buckets.keySet().iterator(); iter.hasNext();) {
+            if (iter.next() < oldestBucket) {
+                iter.remove();
+            }
+        }
+
+    }
+
+    private static long getSkew(B2Context b2Context) {
+
+        Integer skew = Utils.stringToInteger(b2Context.getSetting(Constants.OAUTH_SKEW_PARAMETER, Constants.OAUTH_SKEW_OPTION));
+        if ((skew == null) || (skew <= 0)) {
+            skew = Utils.stringToInteger(Constants.OAUTH_SKEW_OPTION);
+        }
+
+        return skew;
+
+    }
+
+}
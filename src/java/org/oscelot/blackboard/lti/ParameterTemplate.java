@@ -0,0 +1,156 @@
+/*
+    basiclti - Building Block to provide support for Basic LTI
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package org.oscelot.blackboard.lti;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ParameterTemplate is a custom parameter value which has been split into its
+ * literal text and substitution variables so that it can be resolved in a
+ * single pass.
+ * <p>
+ * Compiled templates are cached by value; at each <code>$</code> the longest
+ * supported variable name (see {@link CustomVariables#NAMES}) is matched.
+ */
+class ParameterTemplate {
+
+    private static final int CACHE_CAPACITY = 1000;
+
+    private static final Map<String, ParameterTemplate> templates = new ConcurrentHashMap<String, ParameterTemplate>();
+
+    private final String[] segments;
+    private final boolean[] isVariable;
+
+    private ParameterTemplate(List<String> segments, List<Boolean> isVariable) {
+
+        this.segments = segments.toArray(new String[segments.size()]);
+        this.isVariable = new boolean[this.segments.length];
+        for (int i = 0; i < this.isVariable.length; i++) {
+            this.isVariable[i] = isVariable.get(i);
+        }
+
+    }
+
+    /**
+     * Gets the compiled template for a value.
+     *
+     * @param value the custom parameter value
+     *
+     * @return the compiled template
+     */
+    static ParameterTemplate compile(String value) {
+
+        ParameterTemplate template = templates.get(value);
+        if (template == null) {
+            template = parse(value);
+            if (templates.size() >= CACHE_CAPACITY) {
+                templates.clear();
+            }
+            templates.put(value, template);
+        }
+
+        return template;
+
+    }
+
+    /**
+     * Checks whether the template contains any substitution variables.
+     *
+     * @return <code>true</code> if there is at least one variable
+     */
+    boolean hasVariables() {
+
+        boolean found = false;
+        for (int i = 0; (i < this.isVariable.length) && !found; i++) {
+            found = this.isVariable[i];
+        }
+
+        return found;
+
+    }
+
+    /**
+     * Resolves the template; variables for which no value is available are left unchanged.
+     *
+     * @param variables the source of variable values
+     *
+     * @return the resolved value
+     */
+    String resolve(CustomVariables variables) {
+
+        StringBuilder value = new StringBuilder();
+        String variableValue;
+        for (int i = 0; i < this.segments.length; i++) {
+            if (this.isVariable[i]) {
+                variableValue = variables.getValue(this.segments[i]);
+                if (variableValue == null) {
+                    variableValue = this.segments[i];
+                }
+                value.append(variableValue);
+            } else {
+                value.append(this.segments[i]);
+            }
+        }
+
+        return value.toString();
+
+    }
+
+    private static ParameterTemplate parse(String value) {
+
+        List<String> segments = new ArrayList<String>();
+        List<Boolean> isVariable = new ArrayList<Boolean>();
+        int start = 0;
+        int pos = value.indexOf('$');
+        while (pos >= 0) {
+            String name = null;
+            for (int i = 0; i < CustomVariables.NAMES.length; i++) {
+                if (value.startsWith(CustomVariables.NAMES[i], pos)
+                        && ((name == null) || (CustomVariables.NAMES[i].length() > name.length()))) {
+                    name = CustomVariables.NAMES[i];
+                }
+            }
+            if (name != null) {
+                if (pos > start) {
+                    segments.add(value.substring(start, pos));
+                    isVariable.add(Boolean.FALSE);
+                }
+                segments.add(name);
+                isVariable.add(Boolean.TRUE);
+                start = pos + name.length();
+                pos = value.indexOf('$', start);
+            } else {
+                pos = value.indexOf('$', pos + 1);
+            }
+        }
+        if (start < value.length()) {
+            segments.add(value.substring(start));
+            isVariable.add(Boolean.FALSE);
+        }
+
+        return new ParameterTemplate(segments, isVariable);
+
+    }
+
+}
@@ -27,6 +27,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 
 import org.oscelot.blackboard.lti.services.Service;
+import org.oscelot.blackboard.lti.services.ServiceRegistry;
 
 import com.spvsoftwareproducts.blackboard.utils.B2Context;
 
@@ -114,6 +115,7 @@ public class ServiceList {
     public void persist() {
 
         this.b2Context.persistSettings();
+        ServiceRegistry.clear();
 
     }
 
@@ -0,0 +1,174 @@
+/*
+    basiclti - Building Block to provide support for Basic LTI
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package org.oscelot.blackboard.lti;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+
+import com.spvsoftwareproducts.blackboard.utils.B2Context;
+
+/**
+ * SplashCache holds the content of splash pages retrieved from a URL.
+ * <p>
+ * A copy is used without contacting the tool server until it is older than
+ * the <code>splashcacheage</code> setting (in minutes); it is then revalidated
+ * with a conditional GET using the <code>ETag</code> and
+ * <code>Last-Modified</code> headers from the previous response.  If the
+ * server cannot be reached, or returns an error, the last copy retrieved
+ * continues to be used until the age has passed again.
+ */
+class SplashCache {
+
+    private static final int CAPACITY = 500;
+
+    private static final Map<String, SplashEntry> entries = new ConcurrentHashMap<String, SplashEntry>();
+
+    private SplashCache() {
+    }
+
+    /**
+     * Gets the content of a splash page.
+     *
+     * @param b2Context the B2Context object
+     * @param toolId    the ID of the tool
+     * @param url       the URL of the splash page
+     *
+     * @return the content of the page body (or <code>null</code> if it could not be retrieved)
+     */
+    static String getText(B2Context b2Context, String toolId, String url) {
+
+        String key = toolId + " " + url;
+        SplashEntry entry = entries.get(key);
+        long now = System.currentTimeMillis();
+        if ((entry == null) || (now - entry.checked >= getAge(b2Context))) {
+            GetMethod fileGet = new GetMethod(url);
+            try {
+                if (entry != null) {
+                    if (entry.eTag != null) {
+                        fileGet.setRequestHeader("If-None-Match", entry.eTag);
+                    }
+                    if (entry.lastModified != null) {
+                        fileGet.setRequestHeader("If-Modified-Since", entry.lastModified);
+                    }
+                }
+                int resp = HttpTransport.execute(fileGet, Constants.TIMEOUT);
+                if (resp == HttpStatus.SC_OK) {
+                    entry = new SplashEntry(getBody(fileGet.getResponseBodyAsString()),
+                            getHeader(fileGet, "ETag"), getHeader(fileGet, "Last-Modified"), now);
+                } else if (entry != null) {
+                    if (resp != HttpStatus.SC_NOT_MODIFIED) {
+                        B2Context.log(true, "Unable to retrieve splash page " + url + " (" + resp + "); using previous copy");
+                    }
+                    entry = new SplashEntry(entry.text, entry.eTag, entry.lastModified, now);
+                }
+            } catch (IOException e) {
+                if (entry != null) {
+                    B2Context.log(true, "Unable to retrieve splash page " + url + " (" + e.getMessage() + "); using previous copy");
+                    entry = new SplashEntry(entry.text, entry.eTag, entry.lastModified, now);
+                }
+            } finally {
+                fileGet.releaseConnection();
+            }
+            if (entry != null) {
+                if (!entries.containsKey(key) && (entries.size() >= CAPACITY)) {
+                    entries.clear();
+                }
+                entries.put(key, entry);
+            }
+        }
+
+        String text = null;
+        if (entry != null) {
+            text = entry.text;
+        }
+
+        return text;
+
+    }
+
+    private static long getAge(B2Context b2Context) {
+
+        Integer age = Utils.stringToInteger(b2Context.getSetting(Constants.SPLASH_CACHE_AGE_PARAMETER, Constants.SPLASH_CACHE_AGE_OPTION));
+        if ((age == null) || (age < 0)) {
+            age = Utils.stringToInteger(Constants.SPLASH_CACHE_AGE_OPTION);
+        }
+
+        return 60000L * age;
+
+    }
+
+    private static String getHeader(GetMethod method, String name) {
+
+        String value = null;
+        Header header = method.getResponseHeader(name);
+        if (header != null) {
+            value = header.getValue();
+        }
+
+        return value;
+
+    }
+
+    private static String getBody(String page) {
+
+        String body = page;
+        int pos = body.toLowerCase(Locale.ENGLISH).indexOf("<body>");
+        if (pos >= 0) {
+            body = body.substring(pos + 6);
+        }
+        pos = body.toLowerCase(Locale.ENGLISH).indexOf("</body>");
+        if (pos >= 0) {
+            body = body.substring(0, pos);
+        }
+
+        return body;
+
+    }
+
+    /**
+     * SplashEntry is a copy of a splash page with its validators and the time it
+     * was last checked with the server.
+     */
+    private static class SplashEntry {
+
+        private final String text;
+        private final String eTag;
+        private final String lastModified;
+        private final long checked;
+
+        private SplashEntry(String text, String eTag, String lastModified, long checked) {
+
+            this.text = text;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.checked = checked;
+
+        }
+
+    }
+
+}
@@ -21,11 +21,9 @@
 package org.oscelot.blackboard.lti;
 
 import java.util.Iterator;
-import java.io.IOException;
 import java.util.Locale;
-
-import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.methods.GetMethod;
+import java.util.Map;
+import java.util.HashMap;
 
 import blackboard.base.FormattedText;
 import blackboard.servlet.data.WysiwygText;
@@ -55,6 +53,7 @@ public class Tool {
     private UserTool userTool = null;
     private SystemTool systemTool = null;
     private Mashup mashup = null;
+    private Map<String, String> settingCache = null;
 
     public Tool(B2Context b2Context, String id) {
 
@@ -134,6 +133,15 @@ public class Tool {
 
     }
 
+// Remember setting values once read (only used for tools obtained from a ToolResolver)
+    void cacheSettings() {
+
+        if (this.settingCache == null) {
+            this.settingCache = new HashMap<String, String>();
+        }
+
+    }
+
     private String getToolSetting(String name) {
 
         return this.getToolSetting(name, "");
@@ -148,6 +156,25 @@ public class Tool {
 
     private String getToolSetting(boolean global, boolean anonymous, String name, String defaultValue) {
 
+        String value;
+        if (this.settingCache != null) {
+            String key = String.valueOf(global) + "." + anonymous + "." + name + "\n" + defaultValue;
+            if (this.settingCache.containsKey(key)) {
+                value = this.settingCache.get(key);
+            } else {
+                value = this.readToolSetting(global, anonymous, name, defaultValue);
+                this.settingCache.put(key, value);
+            }
+        } else {
+            value = this.readToolSetting(global, anonymous, name, defaultValue);
+        }
+
+        return value;
+
+    }
+
+    private String readToolSetting(boolean global, boolean anonymous, String name, String defaultValue) {
+
         StringBuilder settingName = new StringBuilder();
         if (this.isDomain || (this.byUrl && global)) {
             settingName.append(Constants.DOMAIN_PARAMETER_PREFIX);
@@ -602,27 +629,9 @@ public class Tool {
             splashText = splashText.trim();
             if (splashText.startsWith("http://") || splashText.startsWith("https://")) {
                 String fileUrl = splashText.replaceAll("\n", "");
-                GetMethod fileGet = null;
-                try {
-                    fileGet = new GetMethod(fileUrl);
-                    HttpClient client = new HttpClient();
-                    client.getHttpConnectionManager().getParams().setConnectionTimeout(30000);
-                    int resp = client.executeMethod(fileGet);
-                    if (resp == 200) {
-                        splashText = fileGet.getResponseBodyAsString();
-                        int pos = splashText.toLowerCase(Locale.ENGLISH).indexOf("<body>");
-                        if (pos >= 0) {
-                            splashText = splashText.substring(pos + 6);
-                        }
-                        pos = splashText.toLowerCase(Locale.ENGLISH).indexOf("</body>");
-                        if (pos >= 0) {
-                            splashText = splashText.substring(0, pos);
-                        }
-                    }
-                } catch (IOException e) {
-                }
-                if (fileGet != null) {
-                    fileGet.releaseConnection();
+                String fileText = SplashCache.getText(this.b2Context, this.id, fileUrl);
+                if (fileText != null) {
+                    splashText = fileText;
                 }
             } else if (splashType.equals(SMART_TEXT_FORMAT)) {
                 FormattedText.Type type = FormattedText.Type.DEFAULT;
@@ -82,25 +82,14 @@ public class ToolList {
                     }
                 }
             }
-            boolean allowLocal = false;
-            if (!this.isDomain) {
-                allowLocal = this.b2Context.getSetting(Constants.TOOL_DELEGATE, Constants.DATA_FALSE).equals(Constants.DATA_TRUE);
-            }
+            boolean allowLocal = this.getAllowLocal();
             this.toolList = new ArrayList<Tool>();
+            ToolResolver resolver = ToolResolver.getResolver(this.b2Context);
             for (Iterator<String> iter = this.toolIDs.listIterator(); iter.hasNext();) {
                 String toolId = iter.next();
                 if ((toolId != null) && (toolId.length() > 0)) {
-                    Tool tool = new Tool(this.b2Context, toolId, this.isDomain);
-                    boolean doAdd;
-                    if (this.isSystem) {
-                        doAdd = this.listAll || tool.getIsEnabled().equals(Constants.DATA_TRUE);
-                    } else if (tool.getIsAvailable().equals(Constants.DATA_TRUE)) {
-                        doAdd = true;
-                    } else {
-                        doAdd = this.listAll && (tool.getIsSystemTool() || allowLocal || b2Context.hasContentContext())
-                                && tool.getIsEnabled().equals(Constants.DATA_TRUE);
-                    }
-                    if (doAdd) {
+                    Tool tool = resolver.getTool(toolId, this.isDomain);
+                    if (this.include(tool, allowLocal)) {
                         this.toolList.add(tool);
                     } else {
                         iter.remove();
@@ -113,6 +102,12 @@ public class ToolList {
 
     }
 
+    public boolean includes(Tool tool) {
+
+        return this.include(tool, this.getAllowLocal());
+
+    }
+
     public boolean isTool(String toolId) {
 
         getList();
@@ -189,8 +184,36 @@ public class ToolList {
                 this.b2Context.setSetting(this.isSystem, true, this.getOrderPrefix() + ".order", order.toString());
             }
             this.b2Context.persistSettings(this.isSystem, true);
+            ConsumerKeyIndex.clear();
+        }
+
+    }
+
+    private boolean include(Tool tool, boolean allowLocal) {
+
+        boolean doAdd;
+        if (this.isSystem) {
+            doAdd = this.listAll || tool.getIsEnabled().equals(Constants.DATA_TRUE);
+        } else if (tool.getIsAvailable().equals(Constants.DATA_TRUE)) {
+            doAdd = true;
+        } else {
+            doAdd = this.listAll && (tool.getIsSystemTool() || allowLocal || b2Context.hasContentContext())
+                    && tool.getIsEnabled().equals(Constants.DATA_TRUE);
+        }
+
+        return doAdd;
+
+    }
+
+    private boolean getAllowLocal() {
+
+        boolean allowLocal = false;
+        if (!this.isDomain) {
+            allowLocal = this.b2Context.getSetting(Constants.TOOL_DELEGATE, Constants.DATA_FALSE).equals(Constants.DATA_TRUE);
         }
 
+        return allowLocal;
+
     }
 
     private String getOrderPrefix() {
@@ -0,0 +1,186 @@
+/*
+    basiclti - Building Block to provide support for Basic LTI
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package org.oscelot.blackboard.lti;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import javax.servlet.http.HttpServletRequest;
+
+import blackboard.platform.institutionalhierarchy.service.Node;
+
+import com.spvsoftwareproducts.blackboard.utils.B2Context;
+
+/**
+ * ToolResolver holds the tools and domains already constructed while
+ * processing a request so that each is only created (and its settings read)
+ * once.
+ * <p>
+ * A resolver is kept as a request attribute for each B2Context object used in
+ * the request; tools obtained from it remember the values of the settings they
+ * read.  {@link #clear} should be called once tool or domain settings have
+ * been changed so that any later use in the same request sees the new values.
+ */
+public class ToolResolver {
+
+    private static final String REQUEST_ATTRIBUTE = ToolResolver.class.getName();
+
+    private final B2Context b2Context;
+    private final Map<String, Tool> tools = new HashMap<String, Tool>();
+
+    private ToolResolver(B2Context b2Context) {
+
+        this.b2Context = b2Context;
+
+    }
+
+    /**
+     * Gets the resolver for a context.
+     *
+     * @param b2Context the B2Context object
+     *
+     * @return the resolver
+     */
+    public static ToolResolver getResolver(B2Context b2Context) {
+
+        ToolResolver resolver = null;
+        HttpServletRequest request = b2Context.getRequest();
+        Map<B2Context, ToolResolver> resolvers = null;
+        if (request != null) {
+            resolvers = getResolvers(request);
+            resolver = resolvers.get(b2Context);
+        }
+        if (resolver == null) {
+            resolver = new ToolResolver(b2Context);
+            if (resolvers != null) {
+                resolvers.put(b2Context, resolver);
+            }
+        }
+
+        return resolver;
+
+    }
+
+    /**
+     * Discards all tools held for a request.
+     *
+     * @param request the request
+     */
+    public static void clear(HttpServletRequest request) {
+
+        if (request != null) {
+            request.removeAttribute(REQUEST_ATTRIBUTE);
+        }
+
+    }
+
+    /**
+     * Gets a tool.
+     *
+     * @param toolId the ID of the tool
+     *
+     * @return the tool
+     */
+    public Tool getTool(String toolId) {
+
+        return getTool(toolId, false);
+
+    }
+
+    /**
+     * Gets a tool or domain.
+     *
+     * @param toolId   the ID of the tool or domain
+     * @param isDomain <code>true</code> if the ID is for a domain
+     *
+     * @return the tool
+     */
+    public Tool getTool(String toolId, boolean isDomain) {
+
+        String key;
+        if (isDomain) {
+            key = "domain:" + toolId;
+        } else {
+            key = "tool:" + toolId;
+        }
+        Tool tool = get(key);
+        if (tool == null) {
+            tool = new Tool(this.b2Context, toolId, isDomain);
+            put(key, tool);
+        }
+
+        return tool;
+
+    }
+
+    /**
+     * Gets a tool previously saved with the resolver.
+     *
+     * @param key the key for the tool
+     *
+     * @return the tool (or <code>null</code> if none has been saved for the key)
+     */
+    Tool get(String key) {
+
+        return this.tools.get(getNodeKey() + key);
+
+    }
+
+    /**
+     * Saves a tool with the resolver.
+     *
+     * @param key  the key for the tool
+     * @param tool the tool
+     */
+    void put(String key, Tool tool) {
+
+        tool.cacheSettings();
+        this.tools.put(getNodeKey() + key, tool);
+
+    }
+
+    private String getNodeKey() {
+
+        String key = "";
+        Node node = this.b2Context.getNode();
+        if (node != null) {
+            key = node.getNodeId().toExternalString() + ":";
+        }
+
+        return key;
+
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<B2Context, ToolResolver> getResolvers(HttpServletRequest request) {
+
+        Map<B2Context, ToolResolver> resolvers = (Map<B2Context, ToolResolver>) request.getAttribute(REQUEST_ATTRIBUTE);
+        if (resolvers == null) {
+            resolvers = new IdentityHashMap<B2Context, ToolResolver>();
+            request.setAttribute(REQUEST_ATTRIBUTE, resolvers);
+        }
+
+        return resolvers;
+
+    }
+
+}
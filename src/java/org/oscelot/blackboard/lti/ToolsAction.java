@@ -31,6 +31,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import com.spvsoftwareproducts.blackboard.utils.B2Context;
+import org.oscelot.blackboard.lti.services.ServiceRegistry;
 
 public class ToolsAction extends HttpServlet {
 
@@ -130,6 +131,7 @@ public class ToolsAction extends HttpServlet {
                             b2Context.setSetting(!isLocal, true, setting, null);
                         }
                     }
+                    ColumnCache.clear(b2Context.getCourseId());
                     if (isLocal) {
                         saveLocal = true;
                     } else {
@@ -237,6 +239,12 @@ public class ToolsAction extends HttpServlet {
         if (saveLocal) {
             b2Context.persistSettings(false, true);
         }
+        if (isDomain) {
+            DomainIndex.clear();
+        } else if (isService) {
+            ServiceRegistry.clear();
+        }
+        ToolResolver.clear(request);
         redirectUrl = b2Context.setReceiptOptions(redirectUrl, b2Context.getResourceString("page.receipt.success"), null);
         response.sendRedirect(redirectUrl);
     }
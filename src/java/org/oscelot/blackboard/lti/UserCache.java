@@ -0,0 +1,192 @@
+/*
+    basiclti - Building Block to provide support for Basic LTI
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package org.oscelot.blackboard.lti;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import blackboard.platform.persistence.PersistenceServiceFactory;
+import blackboard.persist.BbPersistenceManager;
+import blackboard.persist.Id;
+import blackboard.persist.PersistenceException;
+import blackboard.persist.SearchOperator;
+import blackboard.persist.course.CourseMembershipDbLoader;
+import blackboard.persist.user.UserDbLoader;
+import blackboard.persist.user.UserSearch;
+import blackboard.persist.user.UserSearch.SearchKey;
+import blackboard.persist.user.UserSearch.SearchParameter;
+import blackboard.data.course.CourseMembership;
+import blackboard.data.user.User;
+
+/**
+ * UserCache holds the users identified by outcomes requests, and their course
+ * memberships, for a short time so that a burst of requests for the same class
+ * does not repeat the same user lookups (in particular, the search needed to
+ * find a user by student ID).
+ * <p>
+ * Users are cached by the type of user ID and its value, and memberships by
+ * course and user.  Lookups which fail are not cached.  Entries expire after
+ * {@link #MAX_AGE} so changes to a user's availability or role take effect
+ * promptly, and each cache is cleared once it reaches {@link #CAPACITY} entries.
+ */
+public class UserCache {
+
+    private static final long MAX_AGE = 60L * 1000L;
+    private static final int CAPACITY = 5000;
+
+    private static final Map<String, CacheEntry<User>> users = new ConcurrentHashMap<String, CacheEntry<User>>();
+    private static final Map<String, CacheEntry<CourseMembership>> memberships = new ConcurrentHashMap<String, CacheEntry<CourseMembership>>();
+
+    private UserCache() {
+    }
+
+    /**
+     * Gets the user with an ID of the type sent to a tool.
+     *
+     * @param userIdType the type of user ID (username, primary key, UUID, student ID or batch UID)
+     * @param userId     the user ID
+     *
+     * @return the user (or <code>null</code> if not found)
+     *
+     * @throws PersistenceException if the user could not be loaded
+     */
+    public static User getUser(String userIdType, String userId) throws PersistenceException {
+
+        String key = userIdType + ":" + userId;
+        User user = get(users, key);
+        if (user == null) {
+            user = loadUser(userIdType, userId);
+            if (user != null) {
+                put(users, key, user);
+            }
+        }
+
+        return user;
+
+    }
+
+    /**
+     * Gets a user's membership of a course.
+     *
+     * @param courseId the course ID
+     * @param userId   the user ID
+     *
+     * @return the course membership
+     *
+     * @throws PersistenceException if the membership could not be loaded
+     *                              (<code>KeyNotFoundException</code> if the user is not enrolled)
+     */
+    public static CourseMembership getMembership(Id courseId, Id userId) throws PersistenceException {
+
+        String key = courseId.toExternalString() + ":" + userId.toExternalString();
+        CourseMembership coursemembership = get(memberships, key);
+        if (coursemembership == null) {
+            BbPersistenceManager bbPm = PersistenceServiceFactory.getInstance().getDbPersistenceManager();
+            CourseMembershipDbLoader coursemembershipdbloader = (CourseMembershipDbLoader) bbPm.getLoader(CourseMembershipDbLoader.TYPE);
+            coursemembership = coursemembershipdbloader.loadByCourseAndUserId(courseId, userId);
+            put(memberships, key, coursemembership);
+        }
+
+        return coursemembership;
+
+    }
+
+    /**
+     * Discards all cached users and memberships.
+     */
+    public static void clear() {
+
+        users.clear();
+        memberships.clear();
+
+    }
+
+    private static <T> T get(Map<String, CacheEntry<T>> cache, String key) {
+
+        T value = null;
+        CacheEntry<T> entry = cache.get(key);
+        if (entry != null) {
+            if (System.currentTimeMillis() - entry.created > MAX_AGE) {
+                cache.remove(key);
+            } else {
+                value = entry.value;
+            }
+        }
+
+        return value;
+
+    }
+
+    private static <T> void put(Map<String, CacheEntry<T>> cache, String key, T value) {
+
+        if (cache.size() >= CAPACITY) {
+            cache.clear();
+        }
+        cache.put(key, new CacheEntry<T>(value));
+
+    }
+
+    private static User loadUser(String userIdType, String userId) throws PersistenceException {
+
+        User user = null;
+        BbPersistenceManager bbPm = PersistenceServiceFactory.getInstance().getDbPersistenceManager();
+        UserDbLoader userdbloader = (UserDbLoader) bbPm.getLoader(UserDbLoader.TYPE);
+        if (userIdType.equals(Constants.DATA_USERNAME)) {
+            user = userdbloader.loadByUserName(userId);
+        } else if (userIdType.equals(Constants.DATA_PRIMARYKEY)) {
+            user = userdbloader.loadById(bbPm.generateId(User.DATA_TYPE, userId));
+        } else if (userIdType.equals(Constants.DATA_UUID)) {
+            user = userdbloader.loadByUuid(userId);
+        } else if (userIdType.equals(Constants.DATA_STUDENTID)) {
+            SearchParameter sp = new SearchParameter(SearchKey.StudentId, userId, SearchOperator.Equals);
+            UserSearch us = new UserSearch();
+            us.addParameter(sp);
+            List<User> searchUsers = userdbloader.loadByUserSearch(us);
+            if (searchUsers.size() > 0) {
+                user = searchUsers.get(0);
+            }
+        } else if (userIdType.equals(Constants.DATA_BATCHUID)) {
+            user = userdbloader.loadByBatchUid(userId);
+        }
+
+        return user;
+
+    }
+
+    /**
+     * CacheEntry is a cached value and the time it was loaded.
+     */
+    private static class CacheEntry<T> {
+
+        private final T value;
+        private final long created;
+
+        private CacheEntry(T value) {
+
+            this.value = value;
+            this.created = System.currentTimeMillis();
+
+        }
+
+    }
+
+}
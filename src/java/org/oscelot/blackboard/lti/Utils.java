@@ -39,7 +39,6 @@ import java.net.MalformedURLException;
 
 import org.apache.commons.lang.StringEscapeUtils;
 
-import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.codec.binary.Base64;
 
@@ -70,7 +69,6 @@ import blackboard.data.gradebook.Lineitem;
 import blackboard.data.gradebook.impl.OutcomeDefinition;
 import blackboard.data.role.PortalRole;
 import blackboard.data.ValidationException;
-import blackboard.data.content.Content;
 import blackboard.data.course.Group;
 import blackboard.platform.user.MyPlacesUtil;
 import blackboard.platform.user.MyPlacesUtil.AvatarType;
@@ -626,184 +624,27 @@ public class Utils {
 // Function to replace placeholders with user or course properties
     public static String parseParameter(B2Context b2Context, Properties props, Tool tool, String value) {
 
-        User user = b2Context.getUser();
-        if (value.contains("$User.")) {
-            if (tool.getDoSendUserId()) {
-                value = value.replaceAll("\\$User.id", props.getProperty("user_id"));
-                value = value.replaceAll("\\$User.username", user.getUserName());
-                if (value.contains("$User.org")) {
-                    value = value.replaceAll("\\$User.org", getOrg(user.getId(), false));
-                }
-            }
-            if (tool.getDoSendAvatar()) {
-                try {
-                    if (value.contains("$User.image") && MyPlacesUtil.avatarsEnabled() && displayAvatar(user.getId()) && tool.getDoSendAvatar()) {
-                        String image = MyPlacesUtil.getAvatarImage(user.getId());
-                        if (image == null) {
-                            image = "";
-                        } else {
-                            image = b2Context.getServerUrl() + image;
-                        }
-                        value = value.replaceAll("\\$User.image", image);
-                    }
-                } catch (Exception e) {
-                }
-            }
-        }
-        if (value.contains("$Person.")) {
-            if (tool.getDoSendUserSourcedid()) {
-                value = value.replaceAll("\\$Person.sourcedId", user.getBatchUid());
-            }
-            if (tool.getDoSendUsername()) {
-                value = value.replaceAll("\\$Person.name.full", (user.getGivenName() + " " + user.getFamilyName()).trim());
-                value = value.replaceAll("\\$Person.name.family", user.getFamilyName());
-                value = value.replaceAll("\\$Person.name.given", user.getGivenName());
-                value = value.replaceAll("\\$Person.name.middle", user.getMiddleName());
-                value = value.replaceAll("\\$Person.name.prefix", user.getTitle());
-//        value = value.replaceAll("\\$Person.name.suffix", user.getSuffix());
-                value = value.replaceAll("\\$Person.address.street1", user.getStreet1());
-                value = value.replaceAll("\\$Person.address.street2", user.getStreet2());
-//        value = value.replaceAll("\\$Person.address.street3", "");
-//        value = value.replaceAll("\\$Person.address.street4", "");
-                value = value.replaceAll("\\$Person.address.locality", user.getCity());
-                value = value.replaceAll("\\$Person.address.statepr", user.getState());
-                value = value.replaceAll("\\$Person.address.country", user.getCountry());
-                value = value.replaceAll("\\$Person.address.postcode", user.getZipCode());
-                value = value.replaceAll("\\$Person.address.timezone", user.getLocale());
-                value = value.replaceAll("\\$Person.phone.mobile", user.getMobilePhone());
-                value = value.replaceAll("\\$Person.phone.primary", user.getHomePhone1());
-                value = value.replaceAll("\\$Person.phone.home", user.getHomePhone1());
-                value = value.replaceAll("\\$Person.phone.work", user.getBusinessPhone1());
-                value = value.replaceAll("\\$Person.webaddress", user.getWebPage());
-//        value = value.replaceAll("\\$Person.sms", "");
-                value = value.replaceAll("\\$Person.studentId", user.getStudentId());  // Moved from $User section
-            }
-            if (tool.getDoSendEmail()) {
-                value = value.replaceAll("\\$Person.email.primary", user.getEmailAddress());
-                value = value.replaceAll("\\$Person.email.personal", user.getEmailAddress());
-            }
-        }
-        if (value.contains("$Membership.")) {
-            if (tool.getDoSendRoles()) {
-                value = value.replaceAll("\\$Membership.role", props.getProperty("roles"));
-            }
-        }
-        Course course = b2Context.getCourse();
-        Content content = b2Context.getContent();
-        String oldContextId = null;
-        if ((course != null) && value.contains("$Context.")) {
-            if (tool.getDoSendContextId()) {
-                if (value.contains("$Context.id.history")) {
-                    oldContextId = getOldContextId(b2Context, tool.getContextIdType());
-                    value = value.replaceAll("\\$Context.id.history", oldContextId);
-                }
-                if (props.containsKey("context_id")) {
-                    value = value.replaceAll("\\$Context.id", props.getProperty("context_id"));
-                }
-                if (value.contains("$Context.org")) {
-                    value = value.replaceAll("\\$Context.org", getOrg(course.getId(), true));
-                }
-            }
-            if (props.getProperty("context_type").equals("CourseSection")) {
-                if (tool.getDoSendContextSourcedid()) {
-                    value = value.replaceAll("\\$Context.sourcedId", course.getBatchUid());
-                    value = value.replaceAll("\\$Context.dataSource", course.getDataSourceId().toExternalString());
-                    value = value.replaceAll("\\$Context.sourceSectionId", course.getCourseId());
-                }
-//                value = value.replaceAll("\\$Context.label", "");
-                value = value.replaceAll("\\$Context.title", course.getTitle());
-                value = value.replaceAll("\\$Context.shortDescription", course.getDescription());
-                value = value.replaceAll("\\$Context.longDescription", course.getDescription());
-//                value = value.replaceAll("\\$Context.courseNumber", "");
-//                value = value.replaceAll("\\$Context.credits", "");
-//                value = value.replaceAll("\\$Context.maxNumberofStudents", "");
-//                value = value.replaceAll("\\$Context.numberofStudents", "");
-                value = value.replaceAll("\\$Context.dept", getPrimaryNode(course.getId(), true));
-                value = value.replaceAll("\\$Context.timeFrame.begin",
-                        formatCalendar(course.getStartDate(), Constants.ISO_DATE_FORMAT));
-                value = value.replaceAll("\\$Context.timeFrame.end",
-                        formatCalendar(course.getEndDate(), Constants.ISO_DATE_FORMAT));
-//                value = value.replaceAll("\\$Context.enrollControl.accept", "");
-//                value = value.replaceAll("\\$Context.enrollControl.allowed", "");
-            }
-        }
-        if (value.contains("$ResourceLink.")) {
-            if (props.containsKey("resource_link_id")) {
-                if (value.contains("$ResourceLink.id.history")) {
-                    String contentId = b2Context.getRequestParameter("content_id", "");
-                    if (contentId.equals("@X@content.pk_string@X@")) {
-                        contentId = "";
-                    }
-                    if (oldContextId == null) {
-                        oldContextId = getOldContextId(b2Context, tool.getContextIdType());
-                    }
-                    String idString = tool.getPrefix();
-                    String oldResourceId = getOldResourceId(b2Context, oldContextId, contentId);
-                    if ((idString != null) && (idString.length() > 0) && (oldResourceId.length() > 0)) {
-                        String[] resources = oldResourceId.split(",");
-                        StringBuilder ids = new StringBuilder();
-                        for (int i = 0; i < resources.length; i++) {
-                            ids.append(",").append(Utils.urlEncode(Utils.urlDecode(resources[i]) + "_" + idString));
-                        }
-                        oldResourceId = ids.substring(1);
-                    }
-                    value = value.replaceAll("\\$ResourceLink.id.history", oldResourceId);
-                }
-                value = value.replaceAll("\\$ResourceLink.id", props.getProperty("resource_link_id"));
-            }
-            if (props.containsKey("resource_link_title")) {
-                value = value.replaceAll("\\$ResourceLink.title", props.getProperty("resource_link_title"));
-            }
-            if (props.containsKey("resource_link_description")) {
-                value = value.replaceAll("\\$ResourceLink.description", props.getProperty("resource_link_description"));
+        return parseParameter(b2Context, props, tool, value, null);
+
+    }
+
+    public static String parseParameter(B2Context b2Context, Properties props, Tool tool, String value, ServiceList serviceList) {
+
+        if (value.indexOf('$') >= 0) {
+            ParameterTemplate template = ParameterTemplate.compile(value);
+            if (template.hasVariables()) {
+                value = template.resolve(new CustomVariables(b2Context, props, tool));
             }
-            if (content != null) {
-                value = value.replaceAll("\\$ResourceLink.timeFrame.begin", formatCalendar(content.getStartDate(), Constants.ISO_DATE_FORMAT));
-                value = value.replaceAll("\\$ResourceLink.timeFrame.end", formatCalendar(content.getEndDate(), Constants.ISO_DATE_FORMAT));
+            if (serviceList == null) {
+                serviceList = new ServiceList(b2Context, false);
             }
-        }
-        if ((course != null) && value.contains("$CourseSection.") && props.getProperty("context_type").equals("CourseSection")) {
-            if (tool.getDoSendContextId()) {
-                if (props.containsKey("context_id")) {
-                    value = value.replaceAll("\\$CourseSection.id", props.getProperty("context_id"));
-                }
+            List<Service> services = serviceList.getList();
+            Service service;
+            for (Iterator<Service> iter = services.iterator(); iter.hasNext();) {
+                service = iter.next();
+                service.setTool(tool);
+                value = service.parseValue(value);
             }
-            if (tool.getDoSendContextSourcedid()) {
-                value = value.replaceAll("\\$CourseSection.sourcedId", course.getBatchUid());
-                value = value.replaceAll("\\$CourseSection.dataSource", course.getDataSourceId().toExternalString());
-                value = value.replaceAll("\\$CourseSection.sourceSectionId", course.getCourseId());
-            }
-//            value = value.replaceAll("\\$CourseSection.label", "");
-            value = value.replaceAll("\\$CourseSection.title", course.getTitle());
-            value = value.replaceAll("\\$CourseSection.shortDescription", course.getDescription());
-            value = value.replaceAll("\\$CourseSection.longDescription", course.getDescription());
-//            value = value.replaceAll("\\$CourseSection.courseNumber", "");
-//            value = value.replaceAll("\\$CourseSection.credits", "");
-//            value = value.replaceAll("\\$CourseSection.maxNumberofStudents", "");
-//            value = value.replaceAll("\\$CourseSection.numberofStudents", "");
-            value = value.replaceAll("\\$CourseSection.dept", getPrimaryNode(course.getId(), true));
-            value = value.replaceAll("\\$CourseSection.timeFrame.begin",
-                    formatCalendar(course.getStartDate(), Constants.ISO_DATE_FORMAT));
-            value = value.replaceAll("\\$CourseSection.timeFrame.end",
-                    formatCalendar(course.getEndDate(), Constants.ISO_DATE_FORMAT));
-//            value = value.replaceAll("\\$CourseSection.enrollControl.accept", "");
-//            value = value.replaceAll("\\$CourseSection.enrollControl.allowed", "");
-        }
-        if (value.contains("$Result.")) {
-            if (props.containsKey("lis_result_sourcedid")) {
-                value = value.replaceAll("\\$Result.sourcedId", props.getProperty("lis_result_sourcedid"));
-            }
-            if (props.containsKey("lis_outcome_service_url")) {
-                value = value.replaceAll("\\$Result.pointsPossible", tool.getOutcomesPointsPossible());
-            }
-        }
-        ServiceList serviceList = new ServiceList(b2Context, false);
-        List<Service> services = serviceList.getList();
-        Service service;
-        for (Iterator<Service> iter = services.iterator(); iter.hasNext();) {
-            service = iter.next();
-            service.setTool(tool);
-            value = service.parseValue(value);
         }
 
         return value;
@@ -841,6 +682,7 @@ public class Utils {
                 courseContext.persistSettings(false, true);
             }
             if (tools != null) {
+                ColumnCache.clear(courseContext.getCourseId());
                 try {
                     BbPersistenceManager bbPm = PersistenceServiceFactory.getInstance().getDbPersistenceManager();
                     GroupDbLoader groupDbLoader = (GroupDbLoader) bbPm.getLoader(GroupDbLoader.TYPE);
@@ -901,6 +743,7 @@ public class Utils {
         if (columnFormat.equals(Constants.EXT_OUTCOMES_COLUMN_SCORE)) {
             scaleType = Constants.RATIO_RESULT_TYPE;
         }
+        ColumnCache.remove(b2Context, toolId);
         Lineitem lineitem = Gradebook.getColumn(b2Context, toolId, toolName, scaleType, points, scorable, visible, null, create);
         if (lineitem != null) {
             OutcomeDefinition def = lineitem.getOutcomeDefinition();
@@ -1179,13 +1022,13 @@ public class Utils {
 
     public static String readUrlAsString(B2Context b2Context, String urlString, Map<String, String> headers) {
 
+        return readUrlAsString(b2Context, urlString, headers, HttpTransport.getTimeout(b2Context));
+
+    }
+
+    public static String readUrlAsString(B2Context b2Context, String urlString, Map<String, String> headers, int timeout) {
+
         String str = "";
-        int timeout;
-        try {
-            timeout = Integer.parseInt(b2Context.getSetting(Constants.TIMEOUT_PARAMETER) + "000");
-        } catch (NumberFormatException e) {
-            timeout = Constants.TIMEOUT;
-        }
         GetMethod fileGet = null;
         try {
             fileGet = new GetMethod(urlString);
@@ -1194,9 +1037,7 @@ public class Utils {
                 entry = iter.next();
                 fileGet.addRequestHeader(entry.getKey(), entry.getValue());
             }
-            HttpClient client = new HttpClient();
-            client.getHttpConnectionManager().getParams().setConnectionTimeout(timeout);
-            int resp = client.executeMethod(fileGet);
+            int resp = HttpTransport.execute(fileGet, timeout);
             if (resp == 200) {
                 str = fileGet.getResponseBodyAsString();
             }
@@ -1254,37 +1095,10 @@ public class Utils {
                     domainName = "http://" + domainName;
                 }
                 URL url = new URL(domainName);
-                String urlHost = url.getHost();
-                String urlPath = url.getPath();
-                String domainHost = "";
-                String domainPath = "";
-                ToolList domainList = new ToolList(b2Context, true, true);
-                List<Tool> domains = domainList.getList();
-                Tool aDomain;
-                for (Iterator<Tool> iter = domains.iterator(); iter.hasNext();) {
-                    aDomain = iter.next();
-                    if (!isRegExp(aDomain.getName())) {
-                        String[] name = aDomain.getName().split("/", 2);
-                        if (urlHost.endsWith(name[0])) {
-                            if ((name[0].length() > domainHost.length())
-                                    && ((name.length <= 1) || urlPath.startsWith("/" + name[1]))) {
-                                domainHost = name[0];
-                                if (name.length > 1) {
-                                    domainPath = name[1];
-                                } else {
-                                    domainPath = "";
-                                }
-                                domain = aDomain;
-                            } else if (name[0].equals(domainHost) && (name.length > 1) && urlPath.startsWith("/" + name[1])
-                                    && (name[1].length() > domainPath.length())) {
-                                domainPath = name[1];
-                                domain = aDomain;
-                            }
-                        }
-                    } else if (urlString.matches(aDomain.getName())) {  // RegExp
-                        domain = aDomain;
-                        break;
-                    }
+                DomainIndex index = DomainIndex.getIndex(b2Context);
+                String domainId = index.getDomainId(urlString, url.getHost(), url.getPath());
+                if (domainId != null) {
+                    domain = ToolResolver.getResolver(b2Context).getTool(domainId, true);
                 }
             } catch (MalformedURLException e) {
             }
@@ -1298,7 +1112,22 @@ public class Utils {
 // Function to get a Tool definition
     public static Tool getTool(B2Context b2Context, String toolId) {
 
-        Tool tool = new Tool(b2Context, toolId);
+        ToolResolver resolver = ToolResolver.getResolver(b2Context);
+        Tool tool = resolver.get("id:" + toolId);
+        if (tool == null) {
+            tool = findTool(b2Context, resolver, toolId);
+            resolver.put("id:" + toolId, tool);
+        }
+
+        return tool;
+
+    }
+
+// ---------------------------------------------------
+// Function to locate a Tool definition from its ID, or from the tool settings saved for a content item
+    private static Tool findTool(B2Context b2Context, ToolResolver resolver, String toolId) {
+
+        Tool tool = resolver.getTool(toolId);
         if ((tool.getName().length() <= 0) && (tool.getUrl().length() <= 0)) {
             tool = new Tool(b2Context, "", Constants.TOOL_ID + "." + toolId);
         }
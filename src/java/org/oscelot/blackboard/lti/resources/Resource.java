@@ -57,7 +57,7 @@ public abstract class Resource {
 
     public String getPath() {
 
-        return this.getTemplate().replaceAll("[\\(\\)]", "");
+        return ResourceTemplate.getTemplate(this.getTemplate()).getPath();
 
     }
 
@@ -113,8 +113,7 @@ public abstract class Resource {
 
         this.parseTemplate();
         B2Context b2Context = this.getService().getB2Context();
-        String template = this.getTemplate();
-        template = template.replaceAll("[\\(\\)]", "");
+        String template = ResourceTemplate.getTemplate(this.getTemplate()).getPath();
         String url = b2Context.getServerUrl() + b2Context.getPath() + Constants.RESOURCE_PATH + template;
         Map.Entry<String, String> entry;
         for (Iterator<Map.Entry<String, String>> iter = this.params.entrySet().iterator(); iter.hasNext();) {
@@ -141,23 +140,10 @@ public abstract class Resource {
     protected Map<String, String> parseTemplate() {
 
         if (this.params == null) {
-            this.params = new HashMap<String, String>();
             String pathInfo = this.getService().getB2Context().getRequest().getPathInfo();
-            if (pathInfo != null) {
-                String[] path = pathInfo.split("/");
-                String template = this.getTemplate();
-                template = template.replaceAll("[\\(\\)]", "");
-                String[] parts = template.split("/");
-                String value;
-                for (int i = 0; i < parts.length; i++) {
-                    if (parts[i].startsWith("{") && parts[i].endsWith("}")) {
-                        value = "";
-                        if (i < path.length) {
-                            value = path[i];
-                        }
-                        params.put(parts[i].substring(1, parts[i].length() - 1), value);
-                    }
-                }
+            this.params = ResourceTemplate.getTemplate(this.getTemplate()).match(pathInfo);
+            if (this.params == null) {
+                this.params = new HashMap<String, String>();
             }
         }
 
@@ -0,0 +1,221 @@
+/*
+    basiclti - Building Block to provide support for Basic LTI
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package org.oscelot.blackboard.lti.resources;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ResourceTemplate is the compiled form of a resource URL template, such as
+ * <code>/links/{link_id}(/custom)</code>.
+ * <p>
+ * Each variable matches a value of letters, digits, underscores, colons and
+ * hyphens, a part of the template in brackets is optional and a trailing
+ * query template (<code>{?...}</code>) is ignored.  Each variable is captured
+ * by a named group so its value can be read from the match.  Templates are
+ * compiled once and cached.
+ */
+public class ResourceTemplate {
+
+    private static final String VALUE_PATTERN = "[0-9a-zA-Z_:\\-]+";
+
+    private static final Map<String, ResourceTemplate> templates = new ConcurrentHashMap<String, ResourceTemplate>();
+
+    private final String path;
+    private final String firstSegment;
+    private final List<String> variables = new ArrayList<String>();
+    private final Pattern pattern;
+
+    private ResourceTemplate(String template) {
+
+        this.path = template.replaceAll("[\\(\\)]", "");
+        this.firstSegment = getFirstSegment(template);
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < template.length()) {
+            char c = template.charAt(i);
+            int end = -1;
+            if (c == '{') {
+                end = template.indexOf('}', i);
+            }
+            if ((end > i) && (template.charAt(i + 1) == '?') && (end == template.length() - 1)) {
+                i = template.length();
+            } else if ((end > i) && template.substring(i + 1, end).matches("[a-zA-Z_]+")) {
+                appendLiteral(regex, literal);
+                regex.append("(?<").append(getGroupName(this.variables.size())).append(">").append(VALUE_PATTERN).append(")");
+                this.variables.add(template.substring(i + 1, end));
+                i = end + 1;
+            } else if (c == '(') {
+                appendLiteral(regex, literal);
+                regex.append("(?:");
+                i++;
+            } else if (c == ')') {
+                appendLiteral(regex, literal);
+                regex.append(")?");
+                i++;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        appendLiteral(regex, literal);
+        this.pattern = Pattern.compile(regex.toString());
+
+    }
+
+    /**
+     * Gets the compiled form of a template.
+     *
+     * @param template the resource template
+     *
+     * @return the compiled template
+     */
+    public static ResourceTemplate getTemplate(String template) {
+
+        ResourceTemplate resourceTemplate = templates.get(template);
+        if (resourceTemplate == null) {
+            resourceTemplate = new ResourceTemplate(template);
+            templates.put(template, resourceTemplate);
+        }
+
+        return resourceTemplate;
+
+    }
+
+    /**
+     * Gets the first segment of a path.
+     *
+     * @param path the path
+     *
+     * @return the first segment (an empty string if the path has no segments)
+     */
+    public static String getFirstSegment(String path) {
+
+        String segment = "";
+        if (path != null) {
+            int start = 0;
+            if (path.startsWith("/")) {
+                start = 1;
+            }
+            int end = start;
+            while ((end < path.length()) && (path.charAt(end) != '/')) {
+                end++;
+            }
+            segment = path.substring(start, end);
+        }
+
+        return segment;
+
+    }
+
+    /**
+     * Gets the template with the brackets around optional parts removed.
+     *
+     * @return the path
+     */
+    public String getPath() {
+
+        return this.path;
+
+    }
+
+    /**
+     * Gets the first segment of the template, or <code>null</code> if it is a variable.
+     *
+     * @return the first segment
+     */
+    public String getFirstSegment() {
+
+        String segment = null;
+        if (!this.firstSegment.startsWith("{")) {
+            segment = this.firstSegment;
+        }
+
+        return segment;
+
+    }
+
+    /**
+     * Checks whether a path matches the template.
+     *
+     * @param path the path
+     *
+     * @return <code>true</code> if the path matches
+     */
+    public boolean matches(String path) {
+
+        return (path != null) && this.pattern.matcher(path).matches();
+
+    }
+
+    /**
+     * Gets the values of the template variables from a path.
+     *
+     * @param path the path
+     *
+     * @return map of variable values (an empty string for a variable in an
+     *         optional part which is not present), or <code>null</code> if the
+     *         path does not match the template
+     */
+    public Map<String, String> match(String path) {
+
+        Map<String, String> values = null;
+        if (path != null) {
+            Matcher matcher = this.pattern.matcher(path);
+            if (matcher.matches()) {
+                values = new HashMap<String, String>();
+                String value;
+                for (int i = 0; i < this.variables.size(); i++) {
+                    value = matcher.group(getGroupName(i));
+                    if (value == null) {
+                        value = "";
+                    }
+                    values.put(this.variables.get(i), value);
+                }
+            }
+        }
+
+        return values;
+
+    }
+
+    private static String getGroupName(int index) {
+
+        return "v" + index;
+
+    }
+
+    private static void appendLiteral(StringBuilder regex, StringBuilder literal) {
+
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+            literal.setLength(0);
+        }
+
+    }
+
+}
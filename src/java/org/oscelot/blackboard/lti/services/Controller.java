@@ -32,7 +32,7 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.oscelot.blackboard.lti.ServiceList;
+import org.oscelot.blackboard.lti.Constants;
 
 import com.spvsoftwareproducts.blackboard.utils.B2Context;
 import org.oscelot.blackboard.lti.resources.Resource;
@@ -42,72 +42,51 @@ public class Controller extends HttpServlet {
 
     private static final long serialVersionUID = -4671615534859545447L;
 
-    private B2Context b2Context = null;
-    private Response response = null;
-
     protected void processRequest(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 
-        this.b2Context = new B2Context(request);
-        this.response = new Response(request, response);
+        B2Context b2Context = new B2Context(request);
+        Response serviceResponse = new Response(request, response);
         boolean isGet;
         if (request.getMethod().equals("GET")) {
             isGet = true;
-            this.response.setAccept(request.getHeader("Accept"));
+            serviceResponse.setAccept(request.getHeader("Accept"));
         } else {
             isGet = false;
-            this.response.setContentType(request.getContentType());
+            serviceResponse.setContentType(request.getContentType());
         }
-        ServiceList serviceList = new ServiceList(this.b2Context, false);
-        List<Service> services = serviceList.getList();
-
         boolean ok = false;
         Service service = null;
-        List<Resource> resources;
         Resource resource = null;
         String path = request.getPathInfo();
-        String template;
-        String template1;
-        for (Iterator<Service> iter = services.iterator(); iter.hasNext();) {
-            service = iter.next();
-            resources = service.getResources();
-            for (Iterator<Resource> iter2 = resources.iterator(); iter2.hasNext();) {
-                resource = iter2.next();
-                if ((isGet && (this.response.getAccept() != null) && !this.response.getAccept().contains("*/*")
-                        && !resource.getFormats().contains(this.response.getAccept()))
-                        || (!isGet && !resource.getFormats().contains(this.response.getContentType()))) {
-                    continue;
-                }
-                template = resource.getTemplate();
-                template = template.replaceAll("\\{[a-zA-Z_]+\\}", "[0-9a-zA-Z_:\\-]+");
-                template = template.replaceAll("\\{\\?[0-9a-zA-Z_\\-,]+\\}$", "");
-                if (template.contains("(")) {
-                    template1 = template.replaceAll("[\\(\\)]", "");
-                    template = template.replaceAll("\\([0-9a-zA-Z_/]+\\)", "");
-                    ok = path.matches(template1) || path.matches(template);
-                    if (ok) {
-                        break;
+        ServiceRegistry.Route route;
+        for (Iterator<ServiceRegistry.Route> iter = ServiceRegistry.getRoutes(b2Context, path, request.getMethod()).iterator(); iter.hasNext() && !ok;) {
+            route = iter.next();
+            if (isFormat(serviceResponse, isGet, route) && route.template.matches(path)) {
+                service = ServiceRegistry.newService(b2Context, route.className);
+                if ((service != null) && service.getIsEnabled().equals(Constants.DATA_TRUE)) {
+                    List<Resource> resources = service.getResources();
+                    if (route.resourceIndex < resources.size()) {
+                        resource = resources.get(route.resourceIndex);
+                        ok = true;
                     }
-                } else if (path.matches(template)) {
-                    ok = true;
-                    break;
                 }
             }
-            if (ok) {
-                break;
-            }
         }
-        if (!ok) {
-            this.response.setCode(400);
+        if (ok) {
+            readBody(b2Context, serviceResponse, service);
+            resource.execute(b2Context, serviceResponse);
         } else {
-            readBody(service);
-            if (resource.getMethods().contains(request.getMethod())) {
-                resource.execute(this.b2Context, this.response);
-            } else {
-                this.response.setCode(405);
+            serviceResponse.setCode(400);
+            for (Iterator<ServiceRegistry.Route> iter = ServiceRegistry.getRoutes(b2Context, path, null).iterator(); iter.hasNext();) {
+                route = iter.next();
+                if (isFormat(serviceResponse, isGet, route) && route.template.matches(path)) {
+                    serviceResponse.setCode(405);
+                    break;
+                }
             }
         }
 
-        this.response.send();
+        serviceResponse.send();
 
     }
 
@@ -136,11 +115,25 @@ public class Controller extends HttpServlet {
         return "LTI services";
     }
 
-    private void readBody(Service service) {
+    private static boolean isFormat(Response serviceResponse, boolean isGet, ServiceRegistry.Route route) {
+
+        boolean ok;
+        if (isGet) {
+            ok = (serviceResponse.getAccept() == null) || serviceResponse.getAccept().contains("*/*")
+                    || route.formats.contains(serviceResponse.getAccept());
+        } else {
+            ok = route.formats.contains(serviceResponse.getContentType());
+        }
+
+        return ok;
+
+    }
+
+    private void readBody(B2Context b2Context, Response serviceResponse, Service service) {
 
-        service.setMessage(OAuthServlet.getMessage(this.b2Context.getRequest(), null));
+        service.setMessage(OAuthServlet.getMessage(b2Context.getRequest(), null));
         try {
-            this.response.setData(service.getMessage().readBodyAsString());
+            serviceResponse.setData(service.getMessage().readBodyAsString());
         } catch (IOException e) {
         }
 
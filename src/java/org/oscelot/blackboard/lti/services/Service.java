@@ -28,19 +28,18 @@ import java.util.Map;
 import java.io.IOException;
 import java.net.URISyntaxException;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-
 import net.oauth.OAuthAccessor;
 import net.oauth.OAuthConsumer;
 import net.oauth.OAuthException;
 import net.oauth.OAuthMessage;
 import net.oauth.OAuthValidator;
-import net.oauth.SimpleOAuthValidator;
 
 import org.oscelot.blackboard.lti.Tool;
 import org.oscelot.blackboard.lti.Constants;
+import org.oscelot.blackboard.lti.ConsumerKeyIndex;
+import org.oscelot.blackboard.lti.NonceValidator;
 import org.oscelot.blackboard.lti.ToolList;
+import org.oscelot.blackboard.lti.ToolResolver;
 import org.oscelot.blackboard.lti.Utils;
 import org.oscelot.blackboard.lti.resources.Resource;
 import org.oscelot.blackboard.lti.resources.SettingDef;
@@ -161,33 +160,7 @@ public abstract class Service {
 
     public static Service getServiceFromClassName(B2Context b2Context, String className) {
 
-        Class serviceClass;
-        Service service = null;
-        if (className.length() > 0) {
-            try {
-                serviceClass = Class.forName(className);
-                Constructor constructor = serviceClass.getDeclaredConstructor(B2Context.class);
-                constructor.setAccessible(true);
-                service = (Service) constructor.newInstance(b2Context);
-            } catch (ClassNotFoundException e) {
-                service = null;
-                B2Context.log(true, "Unable to find class: " + className);
-            } catch (NoSuchMethodException e) {
-                service = null;
-                B2Context.log(true, "Cannot create service instance: " + e.getMessage());
-            } catch (InvocationTargetException e) {
-                service = null;
-                B2Context.log(true, "Cannot create service instance: " + e.getMessage());
-            } catch (InstantiationException e) {
-                service = null;
-                B2Context.log(true, "Cannot create service instance: " + e.getMessage());
-            } catch (java.lang.IllegalAccessException e) {
-                service = null;
-                B2Context.log(true, "Cannot access service instance: " + e.getMessage());
-            }
-        }
-
-        return service;
+        return ServiceRegistry.newService(b2Context, className);
 
     }
 
@@ -241,13 +214,25 @@ public abstract class Service {
         } else {
             List<String> secrets = new ArrayList<String>();
             ToolList toolList = new ToolList(this.b2Context, false);
-            for (Iterator<Tool> iter = toolList.getList().iterator(); iter.hasNext();) {
-                aTool = iter.next();
-                if (aTool.getIsSystemTool() && aTool.getLaunchGUID().equals(consumerKey) && !secrets.contains(aTool.getLaunchSecret())) {
-                    secrets.add(aTool.getLaunchSecret());
-                    ok = checkSignature(aTool.getLaunchGUID(), aTool.getLaunchSecret());
-                    if (ok) {
-                        break;
+            if (this.isSigned && (consumerKey != null)) {
+                ToolResolver resolver = ToolResolver.getResolver(this.b2Context);
+                for (Iterator<String> iter = ConsumerKeyIndex.getToolIds(this.b2Context, consumerKey).iterator(); iter.hasNext() && !ok;) {
+                    aTool = resolver.getTool(iter.next());
+                    if (toolList.includes(aTool) && aTool.getLaunchGUID().equals(consumerKey) && !secrets.contains(aTool.getLaunchSecret())) {
+                        secrets.add(aTool.getLaunchSecret());
+                        ok = checkSignature(aTool.getLaunchGUID(), aTool.getLaunchSecret());
+                    }
+                }
+            }
+            if (!ok) {
+                for (Iterator<Tool> iter = toolList.getList().iterator(); iter.hasNext();) {
+                    aTool = iter.next();
+                    if (aTool.getIsSystemTool() && aTool.getLaunchGUID().equals(consumerKey) && !secrets.contains(aTool.getLaunchSecret())) {
+                        secrets.add(aTool.getLaunchSecret());
+                        ok = checkSignature(aTool.getLaunchGUID(), aTool.getLaunchSecret());
+                        if (ok) {
+                            break;
+                        }
                     }
                 }
             }
@@ -275,7 +260,7 @@ public abstract class Service {
 
         OAuthConsumer oAuthConsumer;
         OAuthAccessor oAuthAccessor;
-        OAuthValidator validator = new SimpleOAuthValidator();
+        OAuthValidator validator = new NonceValidator(this.b2Context);
         oAuthConsumer = new OAuthConsumer(Constants.OAUTH_CALLBACK, consumerKey, secret, null);
         oAuthAccessor = new OAuthAccessor(oAuthConsumer);
         try {
@@ -0,0 +1,250 @@
+/*
+    basiclti - Building Block to provide support for Basic LTI
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package org.oscelot.blackboard.lti.services;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+import org.oscelot.blackboard.lti.ServiceList;
+import org.oscelot.blackboard.lti.resources.Resource;
+import org.oscelot.blackboard.lti.resources.ResourceTemplate;
+
+import com.spvsoftwareproducts.blackboard.utils.B2Context;
+
+/**
+ * ServiceRegistry holds the constructor for each service class so that the
+ * class lookup and reflective constructor resolution are only performed once,
+ * and the table used to route service requests to the resources of the enabled
+ * services.
+ * <p>
+ * Service objects keep a reference to the B2Context, tool and OAuth message for
+ * the request being processed, so a new instance is still created each time one
+ * is requested; the route table only records which service class and resource
+ * handle each template and method.  Routes are held by the first segment of
+ * their template (routes whose template starts with a variable are held
+ * separately and tried after them) and then by method.  The table is built the
+ * first time it is needed and rebuilt when {@link #clear} is called after the
+ * services have been changed, or once it is older than {@link #MAX_AGE} (to pick
+ * up changes saved on other application servers).
+ */
+public class ServiceRegistry {
+
+    private static final Map<String, Constructor<? extends Service>> constructors = new ConcurrentHashMap<String, Constructor<? extends Service>>();
+    private static final long MAX_AGE = 5L * 60L * 1000L;
+    private static final String ALL_METHODS = "*";
+
+    private static volatile RouteTable routes = null;
+
+    private ServiceRegistry() {
+    }
+
+    /**
+     * Creates a service instance.
+     *
+     * @param b2Context the B2Context for the current request
+     * @param className the name of the service class
+     *
+     * @return the service, or <code>null</code> if the class could not be instantiated
+     */
+    public static Service newService(B2Context b2Context, String className) {
+
+        Service service = null;
+        if ((className != null) && (className.length() > 0)) {
+            Constructor<? extends Service> constructor = getConstructor(className);
+            if (constructor != null) {
+                try {
+                    service = constructor.newInstance(b2Context);
+                } catch (InvocationTargetException e) {
+                    service = null;
+                    B2Context.log(true, "Cannot create service instance: " + e.getMessage());
+                } catch (InstantiationException e) {
+                    service = null;
+                    B2Context.log(true, "Cannot create service instance: " + e.getMessage());
+                } catch (IllegalAccessException e) {
+                    service = null;
+                    B2Context.log(true, "Cannot access service instance: " + e.getMessage());
+                }
+            }
+        }
+
+        return service;
+
+    }
+
+    /**
+     * Gets the routes which may match a request path and method, in the order in
+     * which they should be tried.
+     *
+     * @param b2Context the B2Context for the current request
+     * @param path      the request path
+     * @param method    the request method, or <code>null</code> for all methods
+     *
+     * @return the routes whose template starts with the first segment of the path,
+     *         followed by those whose template starts with a variable
+     */
+    static List<Route> getRoutes(B2Context b2Context, String path, String method) {
+
+        RouteTable table = routes;
+        if ((table == null) || (System.currentTimeMillis() - table.created > MAX_AGE)) {
+            synchronized (ServiceRegistry.class) {
+                table = routes;
+                if ((table == null) || (System.currentTimeMillis() - table.created > MAX_AGE)) {
+                    table = new RouteTable(b2Context);
+                    routes = table;
+                }
+            }
+        }
+        if (method == null) {
+            method = ALL_METHODS;
+        }
+        List<Route> list = new ArrayList<Route>();
+        Map<String, List<Route>> methods = table.segments.get(ResourceTemplate.getFirstSegment(path));
+        if ((methods != null) && methods.containsKey(method)) {
+            list.addAll(methods.get(method));
+        }
+        if (table.variables.containsKey(method)) {
+            list.addAll(table.variables.get(method));
+        }
+
+        return list;
+
+    }
+
+    /**
+     * Removes all cached constructors and the route table (called when services are
+     * added, changed or deleted).
+     */
+    public static void clear() {
+
+        routes = null;
+        constructors.clear();
+
+    }
+
+    private static Constructor<? extends Service> getConstructor(String className) {
+
+        Constructor<? extends Service> constructor = constructors.get(className);
+        if (constructor == null) {
+            try {
+                Class<? extends Service> serviceClass = Class.forName(className).asSubclass(Service.class);
+                constructor = serviceClass.getDeclaredConstructor(B2Context.class);
+                constructor.setAccessible(true);
+                constructors.put(className, constructor);
+            } catch (ClassNotFoundException e) {
+                constructor = null;
+                B2Context.log(true, "Unable to find class: " + className);
+            } catch (ClassCastException e) {
+                constructor = null;
+                B2Context.log(true, "Cannot create service instance: " + className + " is not a service");
+            } catch (NoSuchMethodException e) {
+                constructor = null;
+                B2Context.log(true, "Cannot create service instance: " + e.getMessage());
+            }
+        }
+
+        return constructor;
+
+    }
+
+    /**
+     * RouteTable holds the routes for the enabled services.
+     */
+    private static class RouteTable {
+
+        private final long created;
+        private final Map<String, Map<String, List<Route>>> segments = new HashMap<String, Map<String, List<Route>>>();
+        private final Map<String, List<Route>> variables = new HashMap<String, List<Route>>();
+
+        private RouteTable(B2Context b2Context) {
+
+            this.created = System.currentTimeMillis();
+            List<Service> services = new ServiceList(b2Context, false).getList();
+            Service service;
+            List<Resource> resources;
+            Resource resource;
+            Route route;
+            Map<String, List<Route>> methods;
+            for (Iterator<Service> iter = services.iterator(); iter.hasNext();) {
+                service = iter.next();
+                resources = service.getResources();
+                for (int i = 0; i < resources.size(); i++) {
+                    resource = resources.get(i);
+                    route = new Route(service.getClass().getName(), i, resource);
+                    if (route.template.getFirstSegment() == null) {
+                        methods = this.variables;
+                    } else {
+                        methods = this.segments.get(route.template.getFirstSegment());
+                        if (methods == null) {
+                            methods = new HashMap<String, List<Route>>();
+                            this.segments.put(route.template.getFirstSegment(), methods);
+                        }
+                    }
+                    addRoute(methods, ALL_METHODS, route);
+                    for (Iterator<String> iter2 = resource.getMethods().iterator(); iter2.hasNext();) {
+                        addRoute(methods, iter2.next(), route);
+                    }
+                }
+            }
+
+        }
+
+        private static void addRoute(Map<String, List<Route>> methods, String method, Route route) {
+
+            List<Route> list = methods.get(method);
+            if (list == null) {
+                list = new ArrayList<Route>();
+                methods.put(method, list);
+            }
+            list.add(route);
+
+        }
+
+    }
+
+    /**
+     * Route records the service class and resource which handle a resource template.
+     */
+    static class Route {
+
+        final String className;
+        final int resourceIndex;
+        final ResourceTemplate template;
+        final List<String> formats;
+
+        private Route(String className, int resourceIndex, Resource resource) {
+
+            this.className = className;
+            this.resourceIndex = resourceIndex;
+            this.template = ResourceTemplate.getTemplate(resource.getTemplate());
+            this.formats = new ArrayList<String>(resource.getFormats());
+
+        }
+
+    }
+
+}
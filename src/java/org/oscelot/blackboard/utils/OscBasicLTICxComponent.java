@@ -48,6 +48,7 @@ import blackboard.platform.cx.component.GenericPackageEntry;
 import blackboard.platform.cx.component.ImportControl;
 import blackboard.util.GeneralUtil;
 
+import org.oscelot.blackboard.lti.ColumnCache;
 import org.oscelot.blackboard.lti.Constants;
 import org.oscelot.blackboard.lti.Utils;
 
@@ -186,6 +187,7 @@ public class OscBasicLTICxComponent implements CxComponent {
         } catch (PersistenceException e) {
             copyControl.getLogger().logError(e.getMessage());
         }
+        ColumnCache.clear(courseContext.getCourseId());
     }
 
     @Override
@@ -394,6 +396,7 @@ public class OscBasicLTICxComponent implements CxComponent {
         } catch (PersistenceException e) {
             importControl.getLogger().logError(e.getMessage());
         }
+        ColumnCache.clear(courseContext.getCourseId());
 
     }
 
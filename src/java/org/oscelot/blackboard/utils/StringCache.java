@@ -21,6 +21,7 @@
 package org.oscelot.blackboard.utils;
 
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * StringCacheEntry is a class representing an entry to place in the cache. It
@@ -79,14 +80,26 @@ class StringCacheEntry {
  * expires and is removed from the cache) and capacity (maximum number of
  * entries
  * which can be held in the cache.
+ * <p>
+ * Usage statistics (hits, misses, expirations, evictions and load times) are
+ * recorded using atomic counters so that recording them does not require a lock.
  *
  * @author Stephen P Vickers
- * @version 1.0 (2-Sep-12)
+ * @version 1.1 (16-Oct-26)
  */
 public class StringCache {
 
     protected int age = 0;
     protected int capacity = 0;
+    protected long maxSize = 0L;
+
+    protected final AtomicLong hits = new AtomicLong();
+    protected final AtomicLong misses = new AtomicLong();
+    protected final AtomicLong expirations = new AtomicLong();
+    protected final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadTime = new AtomicLong();
+    private volatile long statisticsStart = System.currentTimeMillis();
 
     /**
      * Class constructor.
@@ -141,6 +154,45 @@ public class StringCache {
 
     }
 
+    /**
+     * Gets the maximum total size of the strings held in the cache.
+     *
+     * @return the maximum size (in bytes, 0 for no limit)
+     */
+    public long getMaxSize() {
+
+        return this.maxSize;
+
+    }
+
+    /**
+     * Sets the maximum total size of the strings held in the cache.
+     * <p>
+     * This implementation only records the setting; a subclass which tracks
+     * the size of its entries must override it to remove any excess entries.
+     *
+     * @param maxSize the maximum size (in bytes, 0 for no limit)
+     */
+    public void setMaxSize(long maxSize) {
+
+        this.maxSize = maxSize;
+
+    }
+
+    /**
+     * Gets the current total size of the strings held in the cache.
+     * <p>
+     * This implementation does not track the size of its entries and always
+     * returns 0; a subclass which does must override it.
+     *
+     * @return the size (in bytes)
+     */
+    public long getBytes() {
+
+        return 0L;
+
+    }
+
     /**
      * Gets the current size of the cache.
      *
@@ -171,6 +223,25 @@ public class StringCache {
 
     }
 
+    /**
+     * Gets the cached string for a specific user, optionally including an entry
+     * which has expired but not yet been removed from the cache.
+     * <p>
+     * This implementation holds no entries and always returns <code>null</code>;
+     * a subclass which retains expired entries (so that a stale copy can be
+     * served while a replacement is obtained) must override it.
+     *
+     * @param key        the ID of the user to whom the XML document relates
+     * @param allowStale <code>true</code> if an expired entry may be returned
+     *
+     * @return the cached string (null if not in the cache)
+     */
+    public String getString(String key, boolean allowStale) {
+
+        return null;
+
+    }
+
     /**
      * Sets the cached string for a specific user.
      *
@@ -199,6 +270,117 @@ public class StringCache {
     protected void removeOldEntries() {
     }
 
+    /**
+     * Records the time taken to obtain a string which is to be added to the cache.
+     *
+     * @param millis the load time (in milliseconds)
+     */
+    public void recordLoad(long millis) {
+
+        this.loads.incrementAndGet();
+        this.loadTime.addAndGet(millis);
+
+    }
+
+    /**
+     * Gets the number of requests for which an unexpired entry was found.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+
+        return this.hits.get();
+
+    }
+
+    /**
+     * Gets the number of requests for which no unexpired entry was found.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+
+        return this.misses.get();
+
+    }
+
+    /**
+     * Gets the number of entries removed because they had expired.
+     *
+     * @return the number of expirations
+     */
+    public long getExpirations() {
+
+        return this.expirations.get();
+
+    }
+
+    /**
+     * Gets the number of entries removed to keep the cache within its capacity
+     * and maximum size.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+
+        return this.evictions.get();
+
+    }
+
+    /**
+     * Gets the number of strings loaded for adding to the cache.
+     *
+     * @return the number of loads
+     */
+    public long getLoads() {
+
+        return this.loads.get();
+
+    }
+
+    /**
+     * Gets the average time taken to load a string for adding to the cache.
+     *
+     * @return the average load time (in milliseconds, 0 if none have been recorded)
+     */
+    public long getAverageLoadTime() {
+
+        long time = 0L;
+        long count = this.loads.get();
+        if (count > 0L) {
+            time = this.loadTime.get() / count;
+        }
+
+        return time;
+
+    }
+
+    /**
+     * Gets the date from which the statistics have been recorded.
+     *
+     * @return the date
+     */
+    public Date getStatisticsDate() {
+
+        return new Date(this.statisticsStart);
+
+    }
+
+    /**
+     * Resets the usage statistics.
+     */
+    public void resetStatistics() {
+
+        this.hits.set(0L);
+        this.misses.set(0L);
+        this.expirations.set(0L);
+        this.evictions.set(0L);
+        this.loads.set(0L);
+        this.loadTime.set(0L);
+        this.statisticsStart = System.currentTimeMillis();
+
+    }
+
     /**
      * Converts a string to an int.
      *
@@ -21,8 +21,8 @@
 package org.oscelot.blackboard.utils;
 
 import java.util.Map;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.Iterator;
 import java.util.Date;
 
 /**
@@ -33,23 +33,29 @@ import java.util.Date;
  * expires and is removed from the cache) and capacity (maximum number of
  * entries
  * which can be held in the cache.
+ * <p>
+ * Entries are held in access order so that, when the cache is full (by number
+ * of entries or by total size), the least recently used entries are removed.
+ * Expired entries are removed when they are next requested.
+ * <p>
+ * Only requests for unexpired entries are counted as hits or misses; a
+ * subsequent request for a stale copy of the same entry is not counted again.
  *
  * @author Stephen P Vickers
- * @version 1.0 (2-Sep-12)
+ * @version 1.1 (16-Oct-26)
  */
 public class StringCacheFile extends StringCache {
 
     private static StringCacheFile instance = null;
-    private final Map<String, StringCacheEntry> stringCache;
-    private final LinkedList<String> mruList;
+    private final LinkedHashMap<String, StringCacheEntry> stringCache;
+    private long bytes = 0L;
 
     /**
      * Class constructor.
      */
     private StringCacheFile() {
 
-        this.stringCache = new HashMap<String, StringCacheEntry>();
-        this.mruList = new LinkedList<String>();
+        this.stringCache = new LinkedHashMap<String, StringCacheEntry>(16, 0.75f, true);
 
     }
 
@@ -67,6 +73,24 @@ public class StringCacheFile extends StringCache {
 
     }
 
+    /**
+     * Returns an instance of this class
+     *
+     * @param age      string containing the age at which an entry expires
+     * @param capacity string containing the capacity of the cache
+     * @param maxSize  string containing the maximum total size of the cached strings (in kilobytes)
+     *
+     * @return StringCache instance of class
+     */
+    public synchronized static StringCacheFile getInstance(String age, String capacity, String maxSize) {
+
+        StringCacheFile stringCache = getInstance(stringToInt(age), stringToInt(capacity));
+        stringCache.setMaxSize(1024L * stringToInt(maxSize));
+
+        return stringCache;
+
+    }
+
     /**
      * Returns an instance of this class
      *
@@ -101,15 +125,30 @@ public class StringCacheFile extends StringCache {
                 clear();
             } else {
                 synchronized (this.stringCache) {
-                    while (this.mruList.size() > this.capacity) {
-                        this.stringCache.remove(this.mruList.removeLast());
-                    }
+                    removeExcessEntries();
                 }
             }
         }
 
     }
 
+    /**
+     * Sets the maximum total size of the strings held in the cache.
+     *
+     * @param maxSize the maximum size (in bytes, 0 for no limit)
+     */
+    @Override
+    public void setMaxSize(long maxSize) {
+
+        if (this.maxSize != maxSize) {
+            this.maxSize = maxSize;
+            synchronized (this.stringCache) {
+                removeExcessEntries();
+            }
+        }
+
+    }
+
     /**
      * Gets the current size of the cache.
      *
@@ -118,8 +157,23 @@ public class StringCacheFile extends StringCache {
     @Override
     public int getSize() {
 
-        removeOldEntries();
-        return this.stringCache.size();
+        synchronized (this.stringCache) {
+            return this.stringCache.size();
+        }
+
+    }
+
+    /**
+     * Gets the current total size of the strings held in the cache.
+     *
+     * @return the size (in bytes)
+     */
+    @Override
+    public long getBytes() {
+
+        synchronized (this.stringCache) {
+            return this.bytes;
+        }
 
     }
 
@@ -131,7 +185,7 @@ public class StringCacheFile extends StringCache {
 
         synchronized (this.stringCache) {
             this.stringCache.clear();
-            this.mruList.clear();
+            this.bytes = 0L;
         }
 
     }
@@ -146,11 +200,44 @@ public class StringCacheFile extends StringCache {
     @Override
     public String getString(String key) {
 
+        return getString(key, false);
+
+    }
+
+    /**
+     * Gets the cached string for a specific user, optionally including an entry
+     * which has expired but not yet been removed from the cache.
+     * <p>
+     * Expired entries are retained for a further period equal to the cache age
+     * so that they can be served while a replacement is obtained.
+     *
+     * @param key        the ID of the user to whom the XML document relates
+     * @param allowStale <code>true</code> if an expired entry may be returned
+     *
+     * @return the cached string (null if not in the cache)
+     */
+    @Override
+    public String getString(String key, boolean allowStale) {
+
         String data = null;
-        removeOldEntries();
-        StringCacheEntry entry = this.stringCache.get(key);
-        if (entry != null) {
-            data = entry.getString();
+        long now = System.currentTimeMillis();
+        synchronized (this.stringCache) {
+            StringCacheEntry entry = this.stringCache.get(key);
+            if (entry != null) {
+                if (entry.getTimestamp() < now - getRetention()) {
+                    remove(key);
+                    this.expirations.incrementAndGet();
+                } else if (allowStale || (entry.getTimestamp() >= now - (60000L * this.age))) {
+                    data = entry.getString();
+                }
+            }
+        }
+        if (!allowStale) {
+            if (data != null) {
+                this.hits.incrementAndGet();
+            } else {
+                this.misses.incrementAndGet();
+            }
         }
 
         return data;
@@ -167,13 +254,12 @@ public class StringCacheFile extends StringCache {
     public void putString(String key, String data) {
 
         if ((this.age > 0) && (this.capacity > 0) && (key != null) && (data != null)) {
-            removeOldEntries();
+            StringCacheEntry entry = new StringCacheEntry(data);
             synchronized (this.stringCache) {
-                if (this.mruList.size() > this.capacity) {
-                    this.stringCache.remove(this.mruList.removeLast());
-                }
-                this.stringCache.put(key, new StringCacheEntry(data));
-                this.mruList.addFirst(key);
+                remove(key);
+                this.stringCache.put(key, entry);
+                this.bytes += getEntrySize(key, entry);
+                removeExcessEntries();
             }
         }
 
@@ -190,9 +276,11 @@ public class StringCacheFile extends StringCache {
     public Date getStringDate(String key) {
 
         Date date = null;
-        StringCacheEntry entry = this.stringCache.get(key);
-        if (entry != null) {
-            date = new Date(entry.getTimestamp());
+        synchronized (this.stringCache) {
+            StringCacheEntry entry = this.stringCache.get(key);
+            if (entry != null) {
+                date = new Date(entry.getTimestamp());
+            }
         }
 
         return date;
@@ -200,27 +288,70 @@ public class StringCacheFile extends StringCache {
     }
 
     /**
-     * Removes expired entries from the cache.
+     * Removes expired entries from the cache (only used when the age setting is
+     * changed; otherwise entries are checked for expiry when requested).
      */
     @Override
     protected void removeOldEntries() {
 
-        long oldest = System.currentTimeMillis() - (60000L * this.age);
+        long oldest = System.currentTimeMillis() - getRetention();
         synchronized (this.stringCache) {
-            while (this.mruList.size() > 0) {
-                String key = this.mruList.getLast();
-                StringCacheEntry entry = this.stringCache.get(key);
-                if (entry == null) {
-                    this.mruList.removeLast();
-                } else if (entry.getTimestamp() < oldest) {
-                    this.mruList.removeLast();
-                    this.stringCache.remove(key);
-                } else {
-                    break;
+            Map.Entry<String, StringCacheEntry> item;
+            for (Iterator<Map.Entry<String, StringCacheEntry>> iter = this.stringCache.entrySet().iterator(); iter.hasNext();) {
+                item = iter.next();
+                if (item.getValue().getTimestamp() < oldest) {
+                    this.bytes -= getEntrySize(item.getKey(), item.getValue());
+                    iter.remove();
+                    this.expirations.incrementAndGet();
                 }
             }
         }
 
     }
 
+    /**
+     * Removes the least recently used entries until the cache is within its
+     * capacity and maximum size; must be called while synchronized on the cache.
+     */
+    private void removeExcessEntries() {
+
+        Map.Entry<String, StringCacheEntry> item;
+        Iterator<Map.Entry<String, StringCacheEntry>> iter = this.stringCache.entrySet().iterator();
+        while (iter.hasNext() && ((this.stringCache.size() > this.capacity) || ((this.maxSize > 0L) && (this.bytes > this.maxSize)))) {
+            item = iter.next();
+            this.bytes -= getEntrySize(item.getKey(), item.getValue());
+            iter.remove();
+            this.evictions.incrementAndGet();
+        }
+
+    }
+
+    /**
+     * Removes an entry; must be called while synchronized on the cache.
+     */
+    private void remove(String key) {
+
+        StringCacheEntry entry = this.stringCache.remove(key);
+        if (entry != null) {
+            this.bytes -= getEntrySize(key, entry);
+        }
+
+    }
+
+    /**
+     * Gets the time for which an entry is retained (its age plus a further
+     * period during which it may be served while stale).
+     */
+    private long getRetention() {
+
+        return 2L * 60000L * this.age;
+
+    }
+
+    private static long getEntrySize(String key, StringCacheEntry entry) {
+
+        return 2L * (key.length() + entry.getString().length());
+
+    }
+
 }
@@ -0,0 +1,81 @@
+/*
+    basiclti - Building Block to provide support for Basic LTI
+    Copyright (C) 2018  Stephen P Vickers
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License along
+    with this program; if not, write to the Free Software Foundation, Inc.,
+    51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+
+    Contact: stephen@spvsoftwareproducts.com
+ */
+package org.oscelot.blackboard.lti;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class NonceValidatorTest {
+
+    private static final long WINDOW = 300L;
+    private static final long NOW = 1500000000L;
+
+    @BeforeMethod
+    public void clearNonces() {
+
+        NonceValidator.clear();
+
+    }
+
+    @Test
+    public void testReplayedNonceIsRejected() {
+
+        assertTrue(NonceValidator.isNewNonce("key", "nonce", NOW, NOW, WINDOW));
+        assertFalse(NonceValidator.isNewNonce("key", "nonce", NOW, NOW + 1L, WINDOW));
+        assertTrue(NonceValidator.isNewNonce("key", "nonce", NOW + 1L, NOW + 1L, WINDOW));
+        assertTrue(NonceValidator.isNewNonce("otherkey", "nonce", NOW, NOW, WINDOW));
+        assertFalse(NonceValidator.isNewNonce("key", null, NOW, NOW, WINDOW));
+
+    }
+
+    @Test
+    public void testTimestampOutsideSkewIsRejected() {
+
+        assertTrue(NonceValidator.isNewNonce("key", "early", NOW - WINDOW, NOW, WINDOW));
+        assertTrue(NonceValidator.isNewNonce("key", "late", NOW + WINDOW, NOW, WINDOW));
+        assertFalse(NonceValidator.isNewNonce("key", "tooearly", NOW - WINDOW - 1L, NOW, WINDOW));
+        assertFalse(NonceValidator.isNewNonce("key", "toolate", NOW + WINDOW + 1L, NOW, WINDOW));
+        assertEquals(NonceValidator.getSize(), 2);
+
+    }
+
+    @Test
+    public void testExpiredBucketsAreRemoved() {
+
+        assertTrue(NonceValidator.isNewNonce("key", "first", NOW, NOW, WINDOW));
+        assertTrue(NonceValidator.isNewNonce("key", "second", NOW, NOW, WINDOW));
+        assertEquals(NonceValidator.getSize(), 2);
+
+        long later = NOW + WINDOW;
+        assertTrue(NonceValidator.isNewNonce("key", "third", later, later, WINDOW));
+        assertEquals(NonceValidator.getSize(), 3);
+
+        later = NOW + WINDOW + NonceValidator.BUCKET_SECONDS;
+        assertTrue(NonceValidator.isNewNonce("key", "fourth", later, later, WINDOW));
+        assertEquals(NonceValidator.getSize(), 2);
+
+    }
+
+}
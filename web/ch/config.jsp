@@ -25,6 +25,7 @@
         blackboard.portal.data.Module,
         org.oscelot.blackboard.lti.Constants,
         org.oscelot.blackboard.lti.Tool,
+        org.oscelot.blackboard.lti.ToolResolver,
         org.oscelot.blackboard.lti.ContentItemMessage,
         org.oscelot.blackboard.lti.Utils,
         com.spvsoftwareproducts.blackboard.utils.B2Context"
@@ -35,7 +36,7 @@
     B2Context b2Context = new B2Context(request);
     Utils.checkInheritSettings(b2Context);
     String toolId = b2Context.getRequestParameter(Constants.TOOL_ID, "");
-    Tool tool = new Tool(b2Context, toolId);
+    Tool tool = ToolResolver.getResolver(b2Context).getTool(toolId);
 
     ContentItemMessage message = new ContentItemMessage(b2Context, tool, module);
     String title = b2Context.getRequestParameter("title", "");
@@ -25,6 +25,7 @@
         blackboard.portal.data.Module,
         org.oscelot.blackboard.lti.Constants,
         org.oscelot.blackboard.lti.Tool,
+        org.oscelot.blackboard.lti.ToolResolver,
         org.oscelot.blackboard.lti.LtiMessage,
         org.oscelot.blackboard.lti.ConfigMessage,
         org.oscelot.blackboard.lti.Utils,
@@ -35,7 +36,7 @@
     Utils.initNode(b2Context, false, false);
     b2Context.setIgnoreContentContext(true);
     String toolId = b2Context.getRequestParameter(Constants.TOOL_ID, "");
-    Tool tool = new Tool(b2Context, toolId);
+    Tool tool = ToolResolver.getResolver(b2Context).getTool(toolId);
     LtiMessage message = new ConfigMessage(b2Context, tool);
     String toolURL = message.tool.getLaunchUrl();
     message.signParameters(toolURL, message.tool.getLaunchGUID(), message.tool.getLaunchSecret(),
@@ -28,6 +28,7 @@
         blackboard.platform.intl.BbLocale,
         com.spvsoftwareproducts.blackboard.utils.B2Context,
         org.oscelot.blackboard.lti.Tool,
+        org.oscelot.blackboard.lti.ToolResolver,
         org.oscelot.blackboard.lti.DashboardFeed,
         org.oscelot.blackboard.lti.Constants,
         org.oscelot.blackboard.lti.Utils"
@@ -48,7 +49,7 @@
       b2Context.getSetting(false, true, Constants.MODULE_TOOL_ID, ""));
   boolean allowLaunch = b2Context.getSetting(false, true, Constants.MODULE_LAUNCH, Constants.DATA_FALSE).equals(Constants.DATA_TRUE);
   boolean showLaunch = allowLaunch && b2Context.getSetting(false, true, Constants.MODULE_LAUNCH_BUTTON, Constants.DATA_FALSE).equals(Constants.DATA_TRUE);
-  Tool tool = new Tool(b2Context, toolId);
+  Tool tool = ToolResolver.getResolver(b2Context).getTool(toolId);
   String launchUrl = "";
   if (allowLaunch) {
     launchUrl = b2Context.getPath() + "tool.jsp?" + Constants.TOOL_MODULE + "=" + module.getId().toExternalString() + "&amp;";
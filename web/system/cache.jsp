@@ -18,19 +18,109 @@
 
     Contact: stephen@spvsoftwareproducts.com
 --%>
-<%@page import="com.spvsoftwareproducts.blackboard.utils.B2Context,
+<!DOCTYPE HTML PUBLIC "-//W3C//DTD HTML 4.01//EN" "http://www.w3.org/TR/html4/strict.dtd">
+<%@page contentType="text/html" pageEncoding="UTF-8"
+        import="java.text.DateFormat,
+        com.spvsoftwareproducts.blackboard.utils.B2Context,
         org.oscelot.blackboard.utils.StringCache,
         org.oscelot.blackboard.utils.StringCacheFile,
-        org.oscelot.blackboard.lti.Constants" %>
-<%
-    B2Context b2Context = new B2Context(request);
-
-    StringCache xmlCache = StringCacheFile.getInstance(
-            b2Context.getSetting(Constants.CACHE_AGE_PARAMETER),
-            b2Context.getSetting(Constants.CACHE_CAPACITY_PARAMETER));
-    xmlCache.clear();
-
-    String cancelUrl = b2Context.setReceiptOptions("tools.jsp",
-            b2Context.getResourceString("page.system.cache.message"), null);
-    response.sendRedirect(cancelUrl);
-%>
+        org.oscelot.blackboard.lti.Constants,
+        org.oscelot.blackboard.lti.Utils"
+        errorPage="../error.jsp"%>
+<%@taglib uri="/bbNG" prefix="bbNG"%>
+<bbNG:genericPage title="${bundle['page.system.cache.title']}" entitlement="system.admin.VIEW">
+  <%
+      String formName = "page.system.cache";
+      Utils.checkForm(request, formName);
+
+      B2Context b2Context = new B2Context(request);
+
+      StringCache xmlCache = StringCacheFile.getInstance(
+              b2Context.getSetting(Constants.CACHE_AGE_PARAMETER),
+              b2Context.getSetting(Constants.CACHE_CAPACITY_PARAMETER),
+              b2Context.getSetting(Constants.CACHE_SIZE_PARAMETER));
+      String query = Utils.getQuery(request);
+      if (request.getMethod().equalsIgnoreCase("POST") && b2Context.getRequestParameter(Constants.ACTION, "").equals("clear")) {
+          xmlCache.clear();
+          xmlCache.resetStatistics();
+          String cancelUrl = b2Context.setReceiptOptions("cache.jsp?" + query,
+                  b2Context.getResourceString("page.system.cache.message"), null);
+          response.sendRedirect(cancelUrl);
+          return;
+      }
+
+      long requests = xmlCache.getHits() + xmlCache.getMisses();
+      long hitRate = 0L;
+      if (requests > 0L) {
+          hitRate = (100L * xmlCache.getHits()) / requests;
+      }
+      DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.MEDIUM, request.getLocale());
+
+      pageContext.setAttribute("query", query);
+      pageContext.setAttribute("bundle", b2Context.getResourceStrings());
+      pageContext.setAttribute("cache", xmlCache);
+      pageContext.setAttribute("hitRate", hitRate);
+      pageContext.setAttribute("kilobytes", (xmlCache.getBytes() + 1023L) / 1024L);
+      pageContext.setAttribute("since", dateFormat.format(xmlCache.getStatisticsDate()));
+  %>
+  <bbNG:jsBlock>
+    <script language="javascript" type="text/javascript">
+      //<![CDATA[
+      function doClear() {
+        document.frmCache.submit();
+      }
+      //]]>
+    </script>
+  </bbNG:jsBlock>
+  <bbNG:pageHeader instructions="${bundle['page.system.cache.instructions']}">
+    <bbNG:breadcrumbBar environment="SYS_ADMIN" navItem="admin_plugin_manage">
+      <bbNG:breadcrumb href="tools.jsp?${query}" title="${bundle['plugin.name']}" />
+      <bbNG:breadcrumb title="${bundle['page.system.cache.title']}" />
+    </bbNG:breadcrumbBar>
+    <bbNG:pageTitleBar iconUrl="../images/lti.gif" showTitleBar="true" title="${bundle['page.system.cache.title']}"/>
+    <bbNG:actionControlBar>
+      <bbNG:actionButton title="${bundle['page.system.cache.button.clear']}" url="JavaScript: doClear();" primary="true" />
+      <bbNG:actionButton title="${bundle['page.system.domains.button.tools']}" url="tools.jsp?${query}" primary="false" />
+    </bbNG:actionControlBar>
+  </bbNG:pageHeader>
+  <bbNG:form name="frmCache" method="post" action="cache.jsp?${query}" isSecure="true" nonceId="<%=formName%>">
+    <input type="hidden" name="<%=Constants.ACTION%>" value="clear" />
+  </bbNG:form>
+  <bbNG:dataCollection showSubmitButtons="false">
+    <bbNG:step hideNumber="false" title="${bundle['page.system.cache.step1.title']}" instructions="${bundle['page.system.cache.step1.instructions']}">
+      <bbNG:dataElement label="${bundle['page.system.cache.step1.size.label']}">
+        ${cache.size} / ${cache.capacity}
+      </bbNG:dataElement>
+      <bbNG:dataElement label="${bundle['page.system.cache.step1.bytes.label']}">
+        ${kilobytes}
+      </bbNG:dataElement>
+      <bbNG:dataElement label="${bundle['page.system.cache.step1.age.label']}">
+        ${cache.age}
+      </bbNG:dataElement>
+    </bbNG:step>
+    <bbNG:step hideNumber="false" title="${bundle['page.system.cache.step2.title']}" instructions="${bundle['page.system.cache.step2.instructions']} ${since}">
+      <bbNG:dataElement label="${bundle['page.system.cache.step2.hits.label']}">
+        ${cache.hits}
+      </bbNG:dataElement>
+      <bbNG:dataElement label="${bundle['page.system.cache.step2.misses.label']}">
+        ${cache.misses}
+      </bbNG:dataElement>
+      <bbNG:dataElement label="${bundle['page.system.cache.step2.hitrate.label']}">
+        ${hitRate}%
+      </bbNG:dataElement>
+      <bbNG:dataElement label="${bundle['page.system.cache.step2.expirations.label']}">
+        ${cache.expirations}
+      </bbNG:dataElement>
+      <bbNG:dataElement label="${bundle['page.system.cache.step2.evictions.label']}">
+        ${cache.evictions}
+      </bbNG:dataElement>
+      <bbNG:dataElement label="${bundle['page.system.cache.step2.loads.label']}">
+        ${cache.loads}
+      </bbNG:dataElement>
+      <bbNG:dataElement label="${bundle['page.system.cache.step2.loadtime.label']}">
+        ${cache.averageLoadTime}
+      </bbNG:dataElement>
+    </bbNG:step>
+  </bbNG:dataCollection>
+  <bbNG:okButton url="tools.jsp?${query}" />
+</bbNG:genericPage>
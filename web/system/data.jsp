@@ -30,6 +30,8 @@
         com.spvsoftwareproducts.blackboard.utils.B2Context,
         org.oscelot.blackboard.lti.Utils,
         org.oscelot.blackboard.lti.ToolList,
+        org.oscelot.blackboard.lti.DomainIndex,
+        org.oscelot.blackboard.lti.ToolResolver,
         org.oscelot.blackboard.lti.Constants,
         org.oscelot.blackboard.lti.Utils"
         errorPage="../error.jsp"%>
@@ -102,6 +104,10 @@
               ToolList toolList = new ToolList(b2Context, true, isDomain);
               toolList.setTool(toolId);
           }
+          if (isDomain) {
+              DomainIndex.clear();
+          }
+          ToolResolver.clear(request);
           cancelUrl = b2Context.setReceiptOptions(cancelUrl,
                   b2Context.getResourceString("page.receipt.success"), null);
           response.sendRedirect(cancelUrl);
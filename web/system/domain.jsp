@@ -31,6 +31,9 @@
         org.oscelot.blackboard.lti.Utils,
         org.oscelot.blackboard.lti.Tool,
         org.oscelot.blackboard.lti.ToolList,
+        org.oscelot.blackboard.lti.DomainIndex,
+        org.oscelot.blackboard.lti.ToolResolver,
+        org.oscelot.blackboard.lti.ConsumerKeyIndex,
         org.oscelot.blackboard.lti.Tool,
         org.oscelot.blackboard.lti.Constants"
         errorPage="../error.jsp"%>
@@ -195,6 +198,9 @@
               } else {
                   b2Context.persistSettings();
               }
+              DomainIndex.clear();
+              ToolResolver.clear(request);
+              ConsumerKeyIndex.clear();
               Utils.doCourseToolsDelete(b2Context, domainId);
               cancelUrl = b2Context.setReceiptOptions(cancelUrl,
                       b2Context.getResourceString(messageResourceString), null);
@@ -33,6 +33,7 @@
         com.spvsoftwareproducts.blackboard.utils.B2Context,
         org.oscelot.blackboard.lti.Utils,
         org.oscelot.blackboard.lti.services.Service,
+        org.oscelot.blackboard.lti.services.ServiceRegistry,
         org.oscelot.blackboard.lti.resources.Resource,
         org.oscelot.blackboard.lti.ServiceList,
         org.oscelot.blackboard.lti.Constants"
@@ -78,6 +79,7 @@
                       serviceName = service.getName();
                       b2Context.setSetting(Constants.SERVICE_PARAMETER_PREFIX + "." + serviceId + "." + Constants.SERVICE_CLASS, className);
                       b2Context.persistSettings();
+                      ServiceRegistry.clear();
                   }
               }
           }
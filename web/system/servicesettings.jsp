@@ -34,6 +34,7 @@
         com.spvsoftwareproducts.blackboard.utils.B2Context,
         org.oscelot.blackboard.lti.Utils,
         org.oscelot.blackboard.lti.services.Service,
+        org.oscelot.blackboard.lti.services.ServiceRegistry,
         org.oscelot.blackboard.lti.resources.Resource,
         org.oscelot.blackboard.lti.resources.SettingDef,
         org.oscelot.blackboard.lti.ServiceList,
@@ -73,6 +74,7 @@
               service.setSetting(setting.getName(), value);
           }
           b2Context.persistSettings();
+          ServiceRegistry.clear();
           cancelUrl = b2Context.setReceiptOptions(cancelUrl,
                   b2Context.getResourceString("page.receipt.success"), null);
           response.sendRedirect(cancelUrl);
@@ -24,6 +24,8 @@
         java.util.HashMap,
         blackboard.platform.user.MyPlacesUtil,
         org.oscelot.blackboard.lti.Constants,
+        org.oscelot.blackboard.lti.DashboardFeed,
+        org.oscelot.blackboard.lti.HttpTransport,
         org.oscelot.blackboard.lti.Utils,
         org.oscelot.blackboard.utils.StringCache,
         org.oscelot.blackboard.utils.StringCacheFile,
@@ -69,24 +71,42 @@
               }
           }
           b2Context.setSetting(Constants.TIMEOUT_PARAMETER, b2Context.getRequestParameter(Constants.TIMEOUT_PARAMETER, String.valueOf(Constants.TIMEOUT_OPTION)));
+          b2Context.setSetting(Constants.HTTP_MAX_HOST_CONNECTIONS_PARAMETER, b2Context.getRequestParameter(Constants.HTTP_MAX_HOST_CONNECTIONS_PARAMETER, ""));
+          b2Context.setSetting(Constants.HTTP_MAX_CONNECTIONS_PARAMETER, b2Context.getRequestParameter(Constants.HTTP_MAX_CONNECTIONS_PARAMETER, ""));
           B2Context.setLogDebug(b2Context.getRequestParameter(Constants.DEBUG_MODE, Constants.DATA_FALSE).equals(Constants.DATA_TRUE));
           b2Context.setSetting(Constants.CACHE_AGE_PARAMETER, b2Context.getRequestParameter(Constants.CACHE_AGE_PARAMETER, Constants.CACHE_OPTION));
           b2Context.setSetting(Constants.CACHE_CAPACITY_PARAMETER, b2Context.getRequestParameter(Constants.CACHE_CAPACITY_PARAMETER, Constants.CACHE_OPTION));
+          b2Context.setSetting(Constants.CACHE_SIZE_PARAMETER, b2Context.getRequestParameter(Constants.CACHE_SIZE_PARAMETER, ""));
+          b2Context.setSetting(Constants.CACHE_DEADLINE_PARAMETER, b2Context.getRequestParameter(Constants.CACHE_DEADLINE_PARAMETER, Constants.CACHE_DEADLINE_OPTION));
+          b2Context.setSetting(Constants.SPLASH_CACHE_AGE_PARAMETER, b2Context.getRequestParameter(Constants.SPLASH_CACHE_AGE_PARAMETER, Constants.SPLASH_CACHE_AGE_OPTION));
           if (!b2Context.getSetting(Constants.TIMEOUT_PARAMETER).matches("\\d*")) {
               b2Context.setReceipt(b2Context.getResourceString("page.system.settings.step3.timeout.error"), false);
+          } else if (!b2Context.getSetting(Constants.HTTP_MAX_HOST_CONNECTIONS_PARAMETER).matches("\\d*")) {
+              b2Context.setReceipt(b2Context.getResourceString("page.system.settings.step3.httpmaxhostconnections.error"), false);
+          } else if (!b2Context.getSetting(Constants.HTTP_MAX_CONNECTIONS_PARAMETER).matches("\\d*")) {
+              b2Context.setReceipt(b2Context.getResourceString("page.system.settings.step3.httpmaxconnections.error"), false);
           } else if (!b2Context.getSetting(Constants.CACHE_AGE_PARAMETER).matches("\\d+")) {
               b2Context.setReceipt(b2Context.getResourceString("page.system.settings.step4.cacheage.error"), false);
           } else if (!b2Context.getSetting(Constants.CACHE_CAPACITY_PARAMETER).matches("\\d+")) {
               b2Context.setReceipt(b2Context.getResourceString("page.system.settings.step4.cachecapacity.error"), false);
+          } else if (!b2Context.getSetting(Constants.CACHE_SIZE_PARAMETER).matches("\\d*")) {
+              b2Context.setReceipt(b2Context.getResourceString("page.system.settings.step4.cachesize.error"), false);
+          } else if (!b2Context.getSetting(Constants.CACHE_DEADLINE_PARAMETER).matches("\\d+")) {
+              b2Context.setReceipt(b2Context.getResourceString("page.system.settings.step4.cachedeadline.error"), false);
+          } else if (!b2Context.getSetting(Constants.SPLASH_CACHE_AGE_PARAMETER).matches("\\d+")) {
+              b2Context.setReceipt(b2Context.getResourceString("page.system.settings.step4.splashcacheage.error"), false);
           } else {
               StringCache xmlCache = StringCacheFile.getInstance(
                       b2Context.getSetting(Constants.CACHE_AGE_PARAMETER),
-                      b2Context.getSetting(Constants.CACHE_CAPACITY_PARAMETER));
+                      b2Context.getSetting(Constants.CACHE_CAPACITY_PARAMETER),
+                      b2Context.getSetting(Constants.CACHE_SIZE_PARAMETER));
               b2Context.setSetting(Constants.CACHE_AGE_PARAMETER,
                       String.valueOf(xmlCache.getAge()));
               b2Context.setSetting(Constants.CACHE_CAPACITY_PARAMETER,
                       String.valueOf(xmlCache.getCapacity()));
               b2Context.persistSettings();
+              HttpTransport.shutdown();
+              DashboardFeed.shutdown();
               cancelUrl = b2Context.setReceiptOptions(cancelUrl,
                       b2Context.getResourceString("page.receipt.success"), null);
               response.sendRedirect(cancelUrl);
@@ -219,6 +239,12 @@
         <bbNG:dataElement isRequired="false" label="${bundle['page.system.settings.step3.timeout.label']}">
           <bbNG:textElement name="<%=Constants.TIMEOUT_PARAMETER%>" value="<%=b2Context.getSetting(Constants.TIMEOUT_PARAMETER, Constants.TIMEOUT_OPTION)%>" helpText="${bundle['page.system.settings.step3.timeout.instructions']}" size="10" />
         </bbNG:dataElement>
+        <bbNG:dataElement isRequired="false" label="${bundle['page.system.settings.step3.httpmaxhostconnections.label']}">
+          <bbNG:textElement name="<%=Constants.HTTP_MAX_HOST_CONNECTIONS_PARAMETER%>" value="<%=b2Context.getSetting(Constants.HTTP_MAX_HOST_CONNECTIONS_PARAMETER, "")%>" helpText="${bundle['page.system.settings.step3.httpmaxhostconnections.instructions']}" size="10" />
+        </bbNG:dataElement>
+        <bbNG:dataElement isRequired="false" label="${bundle['page.system.settings.step3.httpmaxconnections.label']}">
+          <bbNG:textElement name="<%=Constants.HTTP_MAX_CONNECTIONS_PARAMETER%>" value="<%=b2Context.getSetting(Constants.HTTP_MAX_CONNECTIONS_PARAMETER, "")%>" helpText="${bundle['page.system.settings.step3.httpmaxconnections.instructions']}" size="10" />
+        </bbNG:dataElement>
         <bbNG:dataElement isRequired="true" label="${bundle['page.system.settings.step3.debugmode.label']}">
           <bbNG:checkboxElement isSelected="${params.debugmode}" name="<%=Constants.DEBUG_MODE%>" value="<%=Constants.DATA_TRUE%>" helpText="${bundle['page.system.settings.step3.debugmode.instructions']}" />
         </bbNG:dataElement>
@@ -230,6 +256,15 @@
         <bbNG:dataElement isRequired="true" label="${bundle['page.system.settings.step4.cachecapacity.label']}">
           <bbNG:textElement name="<%=Constants.CACHE_CAPACITY_PARAMETER%>" value="<%=b2Context.getSetting(Constants.CACHE_CAPACITY_PARAMETER, Constants.CACHE_OPTION)%>" helpText="${bundle['page.system.settings.step4.cachecapacity.instructions']}" size="10" minLength="1" />
         </bbNG:dataElement>
+        <bbNG:dataElement isRequired="false" label="${bundle['page.system.settings.step4.cachesize.label']}">
+          <bbNG:textElement name="<%=Constants.CACHE_SIZE_PARAMETER%>" value="<%=b2Context.getSetting(Constants.CACHE_SIZE_PARAMETER, "")%>" helpText="${bundle['page.system.settings.step4.cachesize.instructions']}" size="10" />
+        </bbNG:dataElement>
+        <bbNG:dataElement isRequired="true" label="${bundle['page.system.settings.step4.cachedeadline.label']}">
+          <bbNG:textElement name="<%=Constants.CACHE_DEADLINE_PARAMETER%>" value="<%=b2Context.getSetting(Constants.CACHE_DEADLINE_PARAMETER, Constants.CACHE_DEADLINE_OPTION)%>" helpText="${bundle['page.system.settings.step4.cachedeadline.instructions']}" size="10" minLength="1" />
+        </bbNG:dataElement>
+        <bbNG:dataElement isRequired="true" label="${bundle['page.system.settings.step4.splashcacheage.label']}">
+          <bbNG:textElement name="<%=Constants.SPLASH_CACHE_AGE_PARAMETER%>" value="<%=b2Context.getSetting(Constants.SPLASH_CACHE_AGE_PARAMETER, Constants.SPLASH_CACHE_AGE_OPTION)%>" helpText="${bundle['page.system.settings.step4.splashcacheage.instructions']}" size="10" minLength="1" />
+        </bbNG:dataElement>
       </bbNG:step>
       <bbNG:stepSubmit hideNumber="false" showCancelButton="true" cancelUrl="${cancelUrl}" />
     </bbNG:dataCollection>
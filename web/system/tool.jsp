@@ -39,6 +39,8 @@ se<%--
         org.oscelot.blackboard.lti.ServiceList,
         org.oscelot.blackboard.lti.Tool,
         org.oscelot.blackboard.lti.ToolList,
+        org.oscelot.blackboard.lti.ToolResolver,
+        org.oscelot.blackboard.lti.ConsumerKeyIndex,
         org.oscelot.blackboard.lti.MenuItem,
         org.oscelot.blackboard.lti.CourseTool,
         org.oscelot.blackboard.lti.Constants"
@@ -256,6 +258,8 @@ se<%--
               } else {
                   b2Context.persistSettings();
               }
+              ToolResolver.clear(request);
+              ConsumerKeyIndex.clear();
               if (nameChange || descriptionChange) {
                   Tool tool = new Tool(b2Context, toolId);
                   tool.getCourseTool();
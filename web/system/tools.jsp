@@ -351,7 +351,7 @@
       <%
           if (b2Context.getIsRootNode() && hasCache) {
       %>
-      <bbNG:actionButton title="${bundle['page.system.tools.button.cache']} (${size})" url="cache.jsp" primary="false" />
+      <bbNG:actionButton title="${bundle['page.system.tools.button.cache']} (${size})" url="cache.jsp?${query}" primary="false" />
       <%
           }
       %>